@@ -3,12 +3,10 @@ package COMSETsystem;
 import UserExamples.GlobalParameters;
 import UserExamples.TemporalUtils;
 import com.uber.h3core.H3Core;
-import com.uber.h3core.exceptions.DistanceUndefinedException;
 
 import java.io.*;
 import java.util.*;
 import java.lang.*;
-import java.util.concurrent.ThreadLocalRandom;
 
 
 public class AMFleetManager extends FleetManager {
@@ -16,22 +14,27 @@ public class AMFleetManager extends FleetManager {
     H3Core h3;
     private final int h3_resolution = 8;
     private TemporalUtils temporalUtils;
-    private final Map<String, Integer> hexAddr2Region = new HashMap<>();
-    private final Map<String, List<Intersection>> regionIntersectionMap = new HashMap<>();
-    private final Map<String, List<Long>> regionAvailableAgentMap = new HashMap<>();
-    private final Set<String> absentRegions = new HashSet<>();
-    private final Map<String, Float> regionResourceMap = new HashMap<>();
-    private final List<String> regionList = new ArrayList<>();
-    private final Map<String, List<Integer>> regionResourceTimeStamp = new HashMap<>();
-    private final Map<String, List<Integer>> regionDestinationTimeStamp = new HashMap<>();
-    private final Map<Long, Long> agentLastAppearTime = new HashMap<>();
-    private final Map<Long, LocationOnRoad> agentLastLocation = new HashMap<>();
-    private final Set<Long> availableAgent = new TreeSet<>(Comparator.comparingLong((Long id) -> id));
+    // The H3 cells of the map, with their resource weights and predicted pickups and drop-offs indexed by region
+    private RegionIndex regions;
+    private float[] regionWeights;
+    private boolean[] regionWeighted;
+    private float[][] regionTemporalWeights;
+    private final List<Long> regionList = new ArrayList<>();
+    private final Set<Long> absentRegions = new HashSet<>();
+    private boolean[] absentRegionsRecorded;
+    private RegionSampler regionSampler;
+    // The last appearance, assigned resource and availability of each agent
+    private final AgentStateStore agents = new AgentStateStore();
     private final Set<Resource> waitingResources = new TreeSet<>(Comparator.comparingLong((Resource r) -> r.id));
-    private final Map<Long, Resource> resourceAssignment = new HashMap<>();
     private final Map<Long, LinkedList<Intersection>> agentRoutes = new HashMap<>();
     private final Map<Long, List<Resource>> agentResourceHistory = new HashMap<>();
     private final Map<Long, Random> agentRnd = new HashMap<>();
+    // The slots of the available agents indexed by the end intersections of the roads they are on.
+    private final AgentGrid availableAgentGrid;
+    private final double maxRoadSpeed;
+    private static final double AGENT_GRID_CELL_SIZE = 500.0; // meters
+    // The number of agents with the shortest travel times considered for each resource of a batch
+    private static final int BATCH_CANDIDATES = 8;
 
     public AMFleetManager(CityMap map) {
         super(map);
@@ -41,12 +44,31 @@ public class AMFleetManager extends FleetManager {
         }catch (IOException ex){
             ex.printStackTrace();
         }
+        regions = new RegionIndex(h3, h3_resolution, map);
+        absentRegionsRecorded = new boolean[regions.regionCount()];
         // read the predictions file
         readRegionList(GlobalParameters.regions_list);
-        readPickupMatrix(GlobalParameters.pickup_pred_file);
-        readDropOffMatrix(GlobalParameters.dropoff_pred_file);
-        populateRegionIntersecitonMap();
+        regionTemporalWeights = TemporalUtils.decayedHorizonWeights(
+                readTimeStampMatrix(GlobalParameters.pickup_pred_file),
+                readTimeStampMatrix(GlobalParameters.dropoff_pred_file));
         readRegionFrequencyFile(GlobalParameters.region_frequency);
+        regionSampler = new RegionSampler(regions, (region, timeIndex) -> getRegionWeight(region));
+//        regionSampler = new RegionSampler(regions, this::getRegionWeightTemporal);
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (Intersection i : map.intersections().values()) {
+            minX = Math.min(minX, i.getX());
+            minY = Math.min(minY, i.getY());
+            maxX = Math.max(maxX, i.getX());
+            maxY = Math.max(maxY, i.getY());
+        }
+        availableAgentGrid = new AgentGrid(minX, minY, maxX, maxY, AGENT_GRID_CELL_SIZE);
+        double maxSpeed = 0.0;
+        for (Road road : map.roads()) {
+            maxSpeed = Math.max(maxSpeed, road.speed);
+        }
+        maxRoadSpeed = maxSpeed;
     }
 
     private void readRegionList(String fileName) {
@@ -55,7 +77,7 @@ public class AMFleetManager extends FleetManager {
             BufferedReader reader = new BufferedReader(new FileReader(file));
             String tmp = null;
             while ((tmp = reader.readLine()) != null) {
-                regionList.add(tmp);
+                regionList.add(h3.stringToH3(tmp));
             }
             reader.close();
         }catch (Exception ex){
@@ -63,61 +85,37 @@ public class AMFleetManager extends FleetManager {
         }
     }
 
-    private void readPickupMatrix(String fileName){
-        try{
-            File file = new File(fileName);
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            for (String item : regionList)
-                regionResourceTimeStamp.put(item, new ArrayList<Integer>());
-            String tmp = null;
-            while ((tmp = reader.readLine()) != null){
-                String[] regionData = tmp.split(",");
-                for(int i=0; i<regionData.length; i++){
-                    String region_hex = regionList.get(i);
-                    regionResourceTimeStamp.get(region_hex).add((int)Double.parseDouble(regionData[i]));
-                }
-            }
-            reader.close();
-        }catch (Exception ex){
-            ex.printStackTrace();
-        }
-    }
-
-    private void readDropOffMatrix(String fileName){
+    /**
+     * Read a matrix of predicted counts with a row per time interval and a column per region of the region list.
+     *
+     * @return the column of each region of the map; null for the regions that are not in the region list
+     */
+    private int[][] readTimeStampMatrix(String fileName){
+        List<List<Integer>> columns = new ArrayList<>();
+        for (int i = 0; i < regionList.size(); i++)
+            columns.add(new ArrayList<>());
         try{
             File file = new File(fileName);
             BufferedReader reader = new BufferedReader(new FileReader(file));
-            for (String item : regionList)
-                regionDestinationTimeStamp.put(item, new ArrayList<Integer>());
             String tmp = null;
             while ((tmp = reader.readLine()) != null){
                 String[] regionData = tmp.split(",");
                 for(int i=0; i<regionData.length; i++){
-                    String region_hex = regionList.get(i);
-                    regionDestinationTimeStamp.get(region_hex).add((int)Double.parseDouble(regionData[i]));
+                    columns.get(i).add((int)Double.parseDouble(regionData[i]));
                 }
             }
             reader.close();
         }catch (Exception ex){
             ex.printStackTrace();
         }
-    }
-
-    private void populateRegionIntersecitonMap(){
-        for(Intersection i : map.intersections().values()){
-            double lat = i.latitude;
-            double lng = i.longitude;
-            String hexAddr = h3.geoToH3Address(lat, lng, h3_resolution);
-            List<Integer> intersectionResource = new ArrayList<>();
-            if (regionIntersectionMap.containsKey(hexAddr)){
-                regionIntersectionMap.get(hexAddr).add(i);
-            }
-            else {
-                List<Intersection> localVar = new ArrayList<>();
-                localVar.add(i);
-                regionIntersectionMap.put(hexAddr, localVar);
+        int[][] matrix = new int[regions.regionCount()][];
+        for (int i = 0; i < regionList.size(); i++) {
+            int region = regions.regionOf(regionList.get(i));
+            if (region >= 0) {
+                matrix[region] = columns.get(i).stream().mapToInt(Integer::intValue).toArray();
             }
         }
+        return matrix;
     }
 
     private void readRegionFrequencyFile(String fileName){
@@ -128,6 +126,8 @@ public class AMFleetManager extends FleetManager {
         } catch (FileNotFoundException e) {
             e.printStackTrace();
         }
+        regionWeights = new float[regions.regionCount()];
+        regionWeighted = new boolean[regions.regionCount()];
         String tempString = null;
         while(true) {
             try {
@@ -136,7 +136,11 @@ public class AMFleetManager extends FleetManager {
                 e.printStackTrace();
             }
             String[] elements = tempString.split(":");
-            regionResourceMap.put(elements[0], Float.parseFloat(elements[1]));
+            int region = regions.regionOf(h3.stringToH3(elements[0]));
+            if (region >= 0) {
+                regionWeights[region] = Float.parseFloat(elements[1]);
+                regionWeighted[region] = true;
+            }
         }
     }
 
@@ -156,18 +160,16 @@ public class AMFleetManager extends FleetManager {
         return latLon;
     }
 
-    private void addAgentToLeafNode(long agentId, LocationOnRoad currentLoc) {
-        double[] latLon = getLocationLatLon(currentLoc);
-        String hexAddr = h3.geoToH3Address(latLon[0],
-                latLon[1], h3_resolution);
-        if (regionAvailableAgentMap.containsKey(hexAddr)) {
-            regionAvailableAgentMap.get(hexAddr).add(agentId);
-        }
-        else {
-            List<Long> agentList = new ArrayList<>();
-            agentList.add(agentId);
-            regionAvailableAgentMap.put(hexAddr, agentList);
+    private long getLocationCell(LocationOnRoad location){
+        if (location.atEndIntersection()) {
+            // the common case of an agent at an intersection needs no H3 call
+            int region = regions.regionOf(location.road.to);
+            if (region >= 0) {
+                return regions.cell(region);
+            }
         }
+        double[] latLon = getLocationLatLon(location);
+        return regions.cellOf(latLon[0], latLon[1]);
     }
 
     /*
@@ -181,9 +183,19 @@ public class AMFleetManager extends FleetManager {
      */
     @java.lang.Override
     public void onAgentIntroduced(long agentId, LocationOnRoad currentLoc, long time) {
-        agentLastAppearTime.put(agentId, time);
-        agentLastLocation.put(agentId, currentLoc);
-        availableAgent.add(agentId);
+        int slot = agents.slot(agentId);
+        agents.setLastAppearance(slot, time, currentLoc);
+        agents.setAvailable(slot, true);
+        indexAvailableAgent(slot);
+    }
+
+    // Put an available agent into the grid at its last location, or move it there. An agent on a road can only
+    // leave the road through its end intersection, where it is indexed.
+    private void indexAvailableAgent(int slot) {
+        if (agents.isAvailable(slot)) {
+            Intersection end = agents.lastRoad(slot).to;
+            availableAgentGrid.put(slot, end.getX(), end.getY());
+        }
     }
 
     /*
@@ -191,49 +203,142 @@ public class AMFleetManager extends FleetManager {
 
      */
     Long getNearestAvailableAgent(Resource resource, long currentTime) {
-        long earliest = Long.MAX_VALUE;
-        Long bestAgent = null;
-        List<Tuple> eligibleAgents = new ArrayList<>();
-        for (Long id : availableAgent) {
-            if (!agentLastLocation.containsKey(id)) continue;
+        // the agent with the lowest score; ties go to the lowest id
+        long[] bestAgent = {-1};
+        float[] bestScore = {Float.MAX_VALUE};
+        long reach = resource.expirationTime - currentTime;
+        forEachAgentInReach(resource, currentTime, (id, travelTime) -> {
+            long arriveTime = travelTime + currentTime;
+            List<Resource> history = agentResourceHistory.get(id);
+            int numberOfRides = history == null ? 0 : history.size();
+
+            float score = arriveTime * numberOfRides;
+            if (bestAgent[0] == -1 || score < bestScore[0] || (score == bestScore[0] && id < bestAgent[0])) {
+                bestAgent[0] = id;
+                bestScore[0] = score;
+            }
+            // the score is driven by the number of rides rather than the travel time, and an agent without
+            // rides scores 0 however far it is, so the search cannot stop at the nearest agents
+            return reach;
+        });
+        return bestAgent[0] == -1 ? null : bestAgent[0];
+    }
+
+    interface AgentTravelTimeConsumer {
+        /**
+         * @return the longest travel time of the agents still of interest
+         */
+        long accept(long agentId, long travelTime);
+    }
 
+    // Perform an action for every available agent that can reach the pickup location of a resource before the
+    // resource expires, with the travel time of the agent. The agents are searched outward from the pickup
+    // road, and the search ends early once the action only wants agents faster than the ones still to come.
+    private void forEachAgentInReach(Resource resource, long currentTime, AgentTravelTimeConsumer action) {
+        // Every road is at least as long as the straight line between its intersections, so an agent reaches
+        // the pickup road no sooner than the straight-line distance from the end of its road at the highest
+        // speed. Only the agents within the distance covered at that speed in the travel time of interest are
+        // evaluated; the agents on the pickup road itself are within the length of the road.
+        Road pickupRoad = resource.pickupLoc.road;
+        double speed = maxRoadSpeed * maxSpeedFactor();
+        double roadLength = pickupRoad.from.xy.distance(pickupRoad.to.xy);
+        long reach = resource.expirationTime - currentTime;
+
+        availableAgentGrid.forEachOutward(pickupRoad.from.getX(), pickupRoad.from.getY(),
+                searchRadius(reach, speed, roadLength), (slot, distance) -> {
             LocationOnRoad curLoc = getCurrentLocation(
-                    agentLastAppearTime.get(id),
-                    agentLastLocation.get(id),
+                    agents.lastAppearTime(slot),
+                    agents.lastLocation(slot),
                     currentTime);
-            // Warning: map.travelTimeBetween returns the travel time based on speed limits, not
-            // the dynamic travel time. Thus the travel time returned by map.travelTimeBetween may be different
-            // than the actual travel time.
-            long travelTime = map.travelTimeBetween(curLoc, resource.pickupLoc);
-            long arriveTime = travelTime + currentTime;
-            int numberOfRides;
-            if (agentResourceHistory.containsKey(id))
-                numberOfRides = agentResourceHistory.get(id).size();
-            else
-                numberOfRides = 0;
-
-            if (arriveTime <= resource.expirationTime) {
-                eligibleAgents.add(new Tuple(id.toString(), arriveTime * numberOfRides));
+            // dynamic travel time at the current time of day
+            long travelTime = travelTimeBetween(curLoc, resource.pickupLoc, currentTime);
+            long wanted = reach;
+            if (travelTime <= reach) {
+                wanted = Math.min(reach, action.accept(agents.agentId(slot), travelTime));
             }
+            return searchRadius(wanted, speed, roadLength);
+        });
+    }
+
+    private static double searchRadius(long travelTime, double speed, double roadLength) {
+        return Math.max((travelTime + 1) * speed, roadLength) * (1 + 1e-9);
+    }
+
+    private void assignAgent(long agentId, Resource resource) {
+        int slot = agents.slotOf(agentId);
+        agents.setAssignedResource(slot, resource);
+        if (agentResourceHistory.containsKey(agentId))
+            agentResourceHistory.get(agentId).add(resource);
+        else {
+            List<Resource> newList = new ArrayList<>();
+            newList.add(resource);
+            agentResourceHistory.put(agentId, newList);
         }
-        if (eligibleAgents.size() > 0) {
-            eligibleAgents.sort(new Comparator<Tuple>() {
-                @Override
-                public int compare(Tuple o1, Tuple o2) {
-                    if (o1.val > o2.val) {
-                        return 1;
-                    } else if (o1.val < o2.val) {
-                        return -1;
-                    } else {
-                        return 0;
-                    }
+        agentRoutes.put(agentId, new LinkedList<>());
+        agents.setAvailable(slot, false);
+        availableAgentGrid.remove(slot);
+    }
+
+    /*
+        Assign the waiting resources of the batch to the available agents so that the most resources are
+        assigned with the least total travel time to the pickups. Each resource is a row of a sparse cost
+        matrix whose columns are the BATCH_CANDIDATES closest agents that can reach it before it expires.
+     */
+    @java.lang.Override
+    public List<AgentAction> onBatchDispatch(long time) {
+        List<AgentAction> actions = new ArrayList<>();
+        if (waitingResources.isEmpty() || agents.availableCount() == 0) {
+            return actions;
+        }
+        List<Resource> batch = new ArrayList<>(waitingResources);
+        Map<Long, Integer> agentColumns = new HashMap<>();
+        List<Long> columnAgents = new ArrayList<>();
+        int[][] rowColumns = new int[batch.size()][];
+        long[][] rowCosts = new long[batch.size()][];
+        for (int row = 0; row < batch.size(); row++) {
+            // {travel time, agent id} of the agents in reach
+            List<long[]> candidates = new ArrayList<>();
+            // the largest BATCH_CANDIDATES travel times so far, the longest first; once there are as many
+            // candidates, only the agents faster than the slowest of them are still of interest
+            PriorityQueue<Long> fastest = new PriorityQueue<>(BATCH_CANDIDATES, Comparator.reverseOrder());
+            long reach = batch.get(row).expirationTime - time;
+            forEachAgentInReach(batch.get(row), time, (id, travelTime) -> {
+                candidates.add(new long[] {travelTime, id});
+                fastest.add(travelTime);
+                if (fastest.size() > BATCH_CANDIDATES) {
+                    fastest.poll();
                 }
+                return fastest.size() < BATCH_CANDIDATES ? reach : fastest.peek();
             });
-//            System.out.println("Eligible Agents: " + eligibleAgents);
-            return Long.parseLong(eligibleAgents.get(0).key);
+            candidates.sort((c1, c2) -> c1[0] != c2[0] ? Long.compare(c1[0], c2[0]) : Long.compare(c1[1], c2[1]));
+            int count = Math.min(candidates.size(), BATCH_CANDIDATES);
+            rowColumns[row] = new int[count];
+            rowCosts[row] = new long[count];
+            for (int k = 0; k < count; k++) {
+                long agentId = candidates.get(k)[1];
+                Integer column = agentColumns.get(agentId);
+                if (column == null) {
+                    column = columnAgents.size();
+                    agentColumns.put(agentId, column);
+                    columnAgents.add(agentId);
+                }
+                rowColumns[row][k] = column;
+                rowCosts[row][k] = candidates.get(k)[0];
+            }
         }
-        else
-            return null;
+
+        int[] assignment = MinCostAssignment.solve(columnAgents.size(), rowColumns, rowCosts);
+        for (int row = 0; row < batch.size(); row++) {
+            if (assignment[row] < 0) {
+                continue;
+            }
+            long agentId = columnAgents.get(assignment[row]);
+            Resource resource = batch.get(row);
+            waitingResources.remove(resource);
+            assignAgent(agentId, resource);
+            actions.add(AgentAction.assignTo(agentId, resource.id));
+        }
+        return actions;
     }
 
     private Map<Integer, Integer> getStats() {
@@ -269,21 +374,17 @@ public class AMFleetManager extends FleetManager {
 //        }
         AgentAction action = AgentAction.doNothing();
         if (state == ResourceState.AVAILABLE) {
+            if (batchDispatchWindow > 0) {
+                // held back until the end of the batch dispatch window
+                waitingResources.add(resource);
+                return action;
+            }
             Long nearestAgentId = getNearestAvailableAgent(resource, time);
             if (nearestAgentId == null) {
                 waitingResources.add(resource);
             }
             else {
-                resourceAssignment.put(nearestAgentId, resource);
-                if (agentResourceHistory.containsKey(nearestAgentId))
-                    agentResourceHistory.get(nearestAgentId).add(resource);
-                else {
-                    List<Resource> newList = new ArrayList<>();
-                    newList.add(resource);
-                    agentResourceHistory.put(nearestAgentId, newList);
-                }
-                agentRoutes.put(nearestAgentId, new LinkedList<>());
-                availableAgent.remove(nearestAgentId);
+                assignAgent(nearestAgentId, resource);
                 action = AgentAction.assignTo(nearestAgentId, resource.id);
             }
         }
@@ -293,10 +394,8 @@ public class AMFleetManager extends FleetManager {
             for (Resource res : waitingResources) {
                 // If res is in waitingResources, then it must have not expired yet
                 // testing null pointer exception
-                // Warning: map.travelTimeBetween returns the travel time based on speed limits, not
-                // the dynamic travel time. Thus the travel time returned by map.travelTimeBetween may be different
-                // than the actual travel time.
-                long travelTime = map.travelTimeBetween(currentLoc, res.pickupLoc);
+                // dynamic travel time at the current time of day
+                long travelTime = travelTimeBetween(currentLoc, res.pickupLoc, time);
 
                 // if the resource is reachable before expiration
                 long arriveTime = time + travelTime;
@@ -305,16 +404,17 @@ public class AMFleetManager extends FleetManager {
                     bestResource = res;
                 }
             }
+            int slot = agents.slot(resource.assignedAgentId);
             if (bestResource != null) {
                 waitingResources.remove(bestResource);
                 action = AgentAction.assignTo(resource.assignedAgentId, bestResource.id);
             } else {
-                availableAgent.add(resource.assignedAgentId);
+                agents.setAvailable(slot, true);
                 action = AgentAction.doNothing();
             }
-            resourceAssignment.put(resource.assignedAgentId, bestResource);
-            agentLastLocation.put(resource.assignedAgentId, currentLoc);
-            agentLastAppearTime.put(resource.assignedAgentId, time);
+            agents.setAssignedResource(slot, bestResource);
+            agents.setLastAppearance(slot, time, currentLoc);
+            indexAvailableAgent(slot);
         }
         else if (state == ResourceState.PICKED_UP) {
             agentRoutes.put(resource.assignedAgentId, new LinkedList<>());
@@ -323,122 +423,42 @@ public class AMFleetManager extends FleetManager {
             waitingResources.remove(resource);
             if (resource.assignedAgentId != -1) {
                 agentRoutes.put(resource.assignedAgentId, new LinkedList<>());
-                availableAgent.add(resource.assignedAgentId);
-                resourceAssignment.remove(resource.assignedAgentId);
+                int slot = agents.slot(resource.assignedAgentId);
+                agents.setAvailable(slot, true);
+                indexAvailableAgent(slot);
+                agents.setAssignedResource(slot, null);
             }
         }
         return action;
     }
 
-    private Map<String, Float> calculate_probabilities(String source_h3, Map<String, Double> region_resource){
-        Map<String, Float> region_cumulative = new HashMap<>();
-        float sum = 0;
-        for(String candidate_region : region_resource.keySet()){
-            double candidate_resource = region_resource.get(candidate_region);
-            int distance;
-            try {
-                distance = h3.h3Distance(source_h3, candidate_region);
-            } catch (DistanceUndefinedException e) {
-                e.printStackTrace();
-                distance = 1; // XXX
-            }
-//            System.out.println("Distance between regions " + source_h3 + ", " + candidate_region + ": " + distance);
-            float netValue = (float) candidate_resource/(distance + 1) ;
-            sum += netValue;
-            region_cumulative.put(candidate_region, netValue);
-        }
-        // calculate probabilities at this point.
-        for (String candidate_region : region_cumulative.keySet()){
-            float candidate_val = region_cumulative.get(candidate_region);
-            region_cumulative.put(candidate_region, candidate_val/sum);
-        }
-        return region_cumulative;
-    }
-
-    class Tuple{
-        public String key;
-        public float val;
-
-        public Tuple(String _key, float _val){
-            this.key = _key;
-            this.val = _val;
-        }
-
-        public String toString() {
-            return this.key + ":" + this.val;
-        }
-    }
-
-    private String sample_regions(Map<String, Float> regionProbabilities){
-        ArrayList<Tuple> region_list = new ArrayList<>();
-        for (String region : regionProbabilities.keySet()){
-            Float val = regionProbabilities.get(region);
-            Tuple t = new Tuple(region, val);
-            region_list.add(t);
-        }
-        region_list.sort(new Comparator<Tuple>() {
-            @Override
-            public int compare(Tuple o1, Tuple o2) {
-                if (o1.val > o2.val){
-                    return 1;
-                }
-                else if (o1.val < o2.val) {
-                    return -1;
-                }
-                else {
-                    return 0;
-                }
-            }
-        });
-//        System.out.println("Region List: " + region_list);
-        double randomNum = ThreadLocalRandom.current().nextDouble(0, 1);
-//        System.out.println("random number: " + randomNum);
-        float sum = 0;
-        for (Tuple t : region_list) {
-            sum += t.val;
-            if (sum >= randomNum) {
-                return t.key;
-            }
-        }
-        return null;
-    }
-
-    private Intersection selectIntersection(String h3_code){
-        if (regionIntersectionMap.containsKey(h3_code)){
-            List<Intersection> intersectionList = regionIntersectionMap.get(h3_code);
-            int randomNum = ThreadLocalRandom.current().nextInt(0, intersectionList.size());
-            return intersectionList.get(randomNum);
+    private Intersection selectIntersection(int region){
+        if (region >= 0){
+            Intersection[] intersections = regions.intersections(region);
+            int randomNum = random().nextInt(intersections.length);
+            return intersections[randomNum];
         }
         else {
-            System.out.println("Warning h3code not found: " + h3_code);
+            System.out.println("Warning no region selected");
             return null;
         }
     }
 
-    private double getRegionWeightTemporal(String region_h3, long time){
-        int timeIndex = temporalUtils.findTimeIntervalIndex(time);
-        int k = GlobalParameters.timeHorizon / GlobalParameters.timeInterval;
-        double weight = 1.0;
-        List<Integer> resourceTimeStamp = regionResourceTimeStamp.get(region_h3);
-        List<Integer> destinationTimeStamp = regionDestinationTimeStamp.get(region_h3);
-        for(int i = timeIndex; i < timeIndex + k; i++){
-            if(i < resourceTimeStamp.size())
-                weight += Math.pow(0.8, i - timeIndex) * (resourceTimeStamp.get(i) - GlobalParameters.lambda * destinationTimeStamp.get(i));
-        }
-        if(weight < 0)
-            weight = 1.0;
-        return weight;
+    private double getRegionWeightTemporal(int region, int timeIndex){
+        float[] weights = regionTemporalWeights == null ? null : regionTemporalWeights[region];
+        if (weights == null || timeIndex < 0 || timeIndex >= weights.length)
+            return 1.0;
+        return weights[timeIndex];
     }
 
 
 
-    private float getRegionWeight(String h3_code){
-        if (regionResourceMap.containsKey(h3_code)){
-            return regionResourceMap.get(h3_code);
+    private float getRegionWeight(int region){
+        if (regionWeighted[region]){
+            return regionWeights[region];
         }
         else {
-            absentRegions.add(h3_code);
-//            System.out.println("Could not find the region in the resource map: " + h3_code);
+            absentRegions.add(regions.cell(region));
             return 1;
         }
     }
@@ -468,54 +488,25 @@ public class AMFleetManager extends FleetManager {
     LinkedList<Intersection> getRandomRoute(long agentId, LocationOnRoad currentLoc, long time) {
 
 //        System.out.println("finding next intersection for: " + agentId);
-        double[] latLon = getLocationLatLon(currentLoc);
-        String hexAddr = h3.geoToH3Address(latLon[0], latLon[1], h3_resolution);
-//        System.out.println("finding next intersection for region: " + hexAddr);
-        List<String> nearest_h3 = new ArrayList<>();
-        if (regionIntersectionMap.containsKey(hexAddr)) {
-            List<String> candidate_h3 = h3.kRing(hexAddr, 1);
-            for (String region: candidate_h3) {
-                if (region.equals(hexAddr)) {
-                    continue;
-                }
-                if (regionIntersectionMap.containsKey(region)) {
-                    nearest_h3.add(region);
-                } else {
-                    absentRegions.add(region);
-//                    System.out.println("Ignoring the absent region: " + region);
-                }
+        long cell = getLocationCell(currentLoc);
+        int source = regions.regionOf(cell);
+        if (source >= 0 && !absentRegionsRecorded[source]) {
+            for (long absent : regions.absentNeighbours(source)) {
+                absentRegions.add(absent);
             }
+            absentRegionsRecorded[source] = true;
         }
-        else {
-//            System.out.println("Region not found: " + hexAddr);
-            int radius = 2;
-            do {
-                List<String> candidate_regions = h3.kRing(hexAddr, radius);
-                for (String reg : candidate_regions){
-                    if (reg.equals(hexAddr)) {
-                        continue;
-                    }
-                    if (regionIntersectionMap.containsKey(reg)){
-                        nearest_h3.add(reg);
-                    }
-                }
-                radius += 2 * radius;
-            }while (nearest_h3.size() == 0);
-        }
-        Map<String, Double> region_map = new HashMap<>();
-        for (String nearest_region : nearest_h3){
-            double resource_estimate = getRegionWeight(nearest_region);
-//            double resource_estimate = getRegionWeightTemporal(nearest_region, time);
-            region_map.put(nearest_region, resource_estimate);
-        }
-//        System.out.println("Candidate Resource: " + region_map);
-        Map<String, Float> h3_probabilities = calculate_probabilities(hexAddr, region_map);
-//        System.out.println("Region Probabilities: " + h3_probabilities);
-        String h3_selected = sample_regions(h3_probabilities);
-//        System.out.println("next region: " + h3_selected);
-        Intersection selected_intersection = selectIntersection(h3_selected);
+        int selected = regionSampler.sample(cell, 0, random());
+//        int selected = regionSampler.sample(cell, temporalUtils.findTimeIntervalIndex(time), random());
+        Intersection selected_intersection = selectIntersection(selected);
 //        System.out.println("next intersection: " + selected_intersection.id);
         Intersection sourceIntersection = currentLoc.road.to;
+        if (selected_intersection == null) {
+            // no region to head for, e.g., a map without regions; move on to a neighbour
+            LinkedList<Intersection> path = new LinkedList<>();
+            path.add(sourceIntersection.roadsMapFrom.values().iterator().next().to);
+            return path;
+        }
         LinkedList<Intersection> path = map.shortestTravelTimePath(sourceIntersection, selected_intersection);
 //        System.out.println("Selected Path: " + path);
         path.poll(); // ignore the first destination as it is the source one
@@ -525,7 +516,7 @@ public class AMFleetManager extends FleetManager {
     }
 
     LinkedList<Intersection> planRoute(long agentId, LocationOnRoad currentLocation, long time) {
-        Resource assignedRes = resourceAssignment.get(agentId);
+        Resource assignedRes = agents.assignedResource(agents.slot(agentId));
 
         if (assignedRes != null) {
             Intersection sourceIntersection = currentLocation.road.to;
@@ -568,7 +559,8 @@ public class AMFleetManager extends FleetManager {
         if (agentId == 240902L && time == 1464800008L) {
             System.out.println("here");
         }
-        agentLastAppearTime.put(agentId, time);
+        int slot = agents.slot(agentId);
+        agents.setLastAppearTime(slot, time);
         LinkedList<Intersection> route = agentRoutes.getOrDefault(agentId, new LinkedList<>());
         if (route.isEmpty()) {
             route = planRoute(agentId, currentLoc, time);
@@ -577,7 +569,8 @@ public class AMFleetManager extends FleetManager {
         Intersection nextLocation = route.poll();
         Road nextRoad = currentLoc.road.to.roadTo(nextLocation);
         LocationOnRoad locationOnRoad = LocationOnRoad.createFromRoadStart(nextRoad);
-        agentLastLocation.put(agentId, locationOnRoad);
+        agents.setLastLocation(slot, locationOnRoad);
+        indexAvailableAgent(slot);
         return nextLocation;
     }
 
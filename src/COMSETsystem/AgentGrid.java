@@ -0,0 +1,239 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * AgentGrid is a uniform grid index of points in the projected 2D space of a map, each identified by a
+ * small non-negative int, e.g., the positions of the idle agents of a fleet identified by their slots in an
+ * AgentStateStore. The cell of each point and its position in the cell are kept in arrays indexed by the
+ * point, so that points are added, moved and removed in constant time without boxing. A query visits only
+ * the cells overlapping the square around a circle, so that finding the points within a radius does not
+ * scan all the points.
+ * <p>
+ * The grid covers a bounding box given at construction; points outside it are kept in the border cells and
+ * are still found by queries. An AgentGrid is not thread-safe.
+ */
+public class AgentGrid {
+
+	private final double minX;
+	private final double minY;
+	private final double cellSize;
+	private final int columns;
+	private final int rows;
+
+	// The points and their coordinates of each cell, cellCounts[c] of them in cell c.
+	private final int[][] cellPoints;
+	private final double[][] cellXs;
+	private final double[][] cellYs;
+	private final int[] cellCounts;
+
+	// The cell of each point, -1 if the point is not in the grid, and its position in the cell.
+	private int[] pointCells = new int[0];
+	private int[] pointPositions = new int[0];
+	private int size = 0;
+
+	/**
+	 * Constructor of AgentGrid.
+	 *
+	 * @param minX the smallest x coordinate of the bounding box
+	 * @param minY the smallest y coordinate of the bounding box
+	 * @param maxX the largest x coordinate of the bounding box
+	 * @param maxY the largest y coordinate of the bounding box
+	 * @param cellSize the width and height of a cell
+	 */
+	public AgentGrid(double minX, double minY, double maxX, double maxY, double cellSize) {
+		if (!(cellSize > 0)) {
+			throw new IllegalArgumentException("cell size must be positive");
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.cellSize = cellSize;
+		this.columns = (int) Math.max(1, Math.floor((maxX - minX) / cellSize) + 1);
+		this.rows = (int) Math.max(1, Math.floor((maxY - minY) / cellSize) + 1);
+		int cells = columns * rows;
+		cellPoints = new int[cells][];
+		cellXs = new double[cells][];
+		cellYs = new double[cells][];
+		cellCounts = new int[cells];
+	}
+
+	/**
+	 * @return the number of points in the grid
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int point) {
+		return point < pointCells.length && pointCells[point] >= 0;
+	}
+
+	/**
+	 * Add a point, or move it if it is already in the grid.
+	 *
+	 * @param point the point, a non-negative int
+	 */
+	public void put(int point, double x, double y) {
+		remove(point);
+		if (point >= pointCells.length) {
+			int capacity = Math.max(point + 1, pointCells.length * 2);
+			int oldCapacity = pointCells.length;
+			pointCells = Arrays.copyOf(pointCells, capacity);
+			pointPositions = Arrays.copyOf(pointPositions, capacity);
+			Arrays.fill(pointCells, oldCapacity, capacity, -1);
+		}
+		int cell = cell(column(x), row(y));
+		int count = cellCounts[cell];
+		if (cellPoints[cell] == null) {
+			cellPoints[cell] = new int[4];
+			cellXs[cell] = new double[4];
+			cellYs[cell] = new double[4];
+		} else if (count == cellPoints[cell].length) {
+			cellPoints[cell] = Arrays.copyOf(cellPoints[cell], count * 2);
+			cellXs[cell] = Arrays.copyOf(cellXs[cell], count * 2);
+			cellYs[cell] = Arrays.copyOf(cellYs[cell], count * 2);
+		}
+		cellPoints[cell][count] = point;
+		cellXs[cell][count] = x;
+		cellYs[cell][count] = y;
+		cellCounts[cell] = count + 1;
+		pointCells[point] = cell;
+		pointPositions[point] = count;
+		size++;
+	}
+
+	/**
+	 * Remove a point.
+	 *
+	 * @return false if the point is not in the grid
+	 */
+	public boolean remove(int point) {
+		if (!contains(point)) {
+			return false;
+		}
+		int cell = pointCells[point];
+		int i = pointPositions[point];
+		int last = --cellCounts[cell];
+		// the order within a cell does not matter; fill the hole with the last point
+		int moved = cellPoints[cell][last];
+		cellPoints[cell][i] = moved;
+		cellXs[cell][i] = cellXs[cell][last];
+		cellYs[cell][i] = cellYs[cell][last];
+		pointPositions[moved] = i;
+		pointCells[point] = -1;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Perform an action for every point whose distance to (x, y) is at most radius, in no particular order.
+	 * The grid must not be modified by the action.
+	 */
+	public void forEachWithin(double x, double y, double radius, IntConsumer action) {
+		if (radius < 0) {
+			return;
+		}
+		int firstColumn = column(x - radius);
+		int lastColumn = column(x + radius);
+		int firstRow = row(y - radius);
+		int lastRow = row(y + radius);
+		double radiusSquared = radius * radius;
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				int cell = cell(column, row);
+				int count = cellCounts[cell];
+				for (int i = 0; i < count; i++) {
+					double dx = cellXs[cell][i] - x;
+					double dy = cellYs[cell][i] - y;
+					if (dx * dx + dy * dy <= radiusSquared) {
+						action.accept(cellPoints[cell][i]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits a point found by forEachOutward and returns the radius the search continues with.
+	 */
+	public interface OutwardVisitor {
+		double visit(int point, double distance);
+	}
+
+	/**
+	 * Visit the points whose distance to (x, y) is at most radius, cell ring by cell ring outward from the
+	 * cell of (x, y), so that nearer points tend to be visited first. Each visit returns the radius for the
+	 * rest of the search, which lets a caller that has found good enough points stop the search early; the
+	 * search ends once the remaining rings are all farther than the radius. The grid must not be modified by
+	 * the visitor.
+	 */
+	public void forEachOutward(double x, double y, double radius, OutwardVisitor visitor) {
+		int centerColumn = column(x);
+		int centerRow = row(y);
+		for (int ring = 0; radius >= 0; ring++) {
+			int firstColumn = centerColumn - ring;
+			int lastColumn = centerColumn + ring;
+			int firstRow = centerRow - ring;
+			int lastRow = centerRow + ring;
+			for (int row = Math.max(0, firstRow); row <= Math.min(rows - 1, lastRow); row++) {
+				boolean edgeRow = row == firstRow || row == lastRow;
+				for (int column = Math.max(0, firstColumn); column <= Math.min(columns - 1, lastColumn); column++) {
+					if (!edgeRow && column != firstColumn && column != lastColumn) {
+						// the inner cells were visited by the previous rings
+						column = lastColumn - 1;
+						continue;
+					}
+					radius = visitCell(cell(column, row), x, y, radius, visitor);
+				}
+			}
+			// the points of the cells beyond the rings visited so far, whether inside the bounding box or
+			// kept in the border cells, are at least as far as the nearest inner side of the rings
+			double beyond = Double.POSITIVE_INFINITY;
+			if (firstColumn > 0) {
+				beyond = Math.min(beyond, x - (minX + firstColumn * cellSize));
+			}
+			if (lastColumn < columns - 1) {
+				beyond = Math.min(beyond, minX + (lastColumn + 1) * cellSize - x);
+			}
+			if (firstRow > 0) {
+				beyond = Math.min(beyond, y - (minY + firstRow * cellSize));
+			}
+			if (lastRow < rows - 1) {
+				beyond = Math.min(beyond, minY + (lastRow + 1) * cellSize - y);
+			}
+			if (beyond > radius) {
+				return;
+			}
+		}
+	}
+
+	private double visitCell(int cell, double x, double y, double radius, OutwardVisitor visitor) {
+		int count = cellCounts[cell];
+		for (int i = 0; i < count; i++) {
+			double dx = cellXs[cell][i] - x;
+			double dy = cellYs[cell][i] - y;
+			double distance = Math.sqrt(dx * dx + dy * dy);
+			if (distance <= radius) {
+				radius = visitor.visit(cellPoints[cell][i], distance);
+			}
+		}
+		return radius;
+	}
+
+	private int column(double x) {
+		return clamp(Math.floor((x - minX) / cellSize), columns);
+	}
+
+	private int row(double y) {
+		return clamp(Math.floor((y - minY) / cellSize), rows);
+	}
+
+	private static int clamp(double index, int count) {
+		return (int) Math.max(0, Math.min(count - 1, index));
+	}
+
+	private int cell(int column, int row) {
+		return row * columns + column;
+	}
+}
@@ -0,0 +1,212 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * AgentStateStore keeps the state a fleet manager tracks for each agent in parallel arrays indexed by a dense
+ * int slot, instead of in maps keyed by boxed agent ids. An agent gets a slot the first time it is seen, and
+ * keeps it for the rest of the simulation. The state of an agent is:
+ * <ul>
+ *     <li>the time it was last seen and the road and offset on the road at which it was seen;</li>
+ *     <li>the resource assigned to it, if any;</li>
+ *     <li>whether it is available for assignment.</li>
+ * </ul>
+ * Agent ids are mapped to slots with an open addressing table of primitive longs, and the available agents
+ * are kept in a dense list of slots, so looking up, updating and iterating agents allocates nothing.
+ * <p>
+ * A fleet manager may keep further state of its own in arrays indexed by the same slots. An AgentStateStore is
+ * not thread-safe.
+ */
+public class AgentStateStore {
+
+	// The table mapping agent ids to slots: keys[i] holds an agent id if values[i] >= 0.
+	private long[] keys = new long[64];
+	private int[] values = new int[64];
+
+	private int size = 0;
+
+	// The state of each slot, size of them.
+	private long[] agentIds = new long[16];
+	private long[] lastAppearTimes = new long[16];
+	private Road[] lastRoads = new Road[16];
+	private double[] lastOffsets = new double[16];
+	private Resource[] assignedResources = new Resource[16];
+
+	// The slots of the available agents, availableCount of them, and the position of each slot in the list;
+	// -1 if the agent is not available.
+	private int[] availableSlots = new int[16];
+	private int availableCount = 0;
+	private int[] availablePositions = new int[16];
+
+	public AgentStateStore() {
+		Arrays.fill(values, -1);
+	}
+
+	/**
+	 * @return the number of agents in the store
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the slot of an agent; -1 if the agent is not in the store
+	 */
+	public int slotOf(long agentId) {
+		int mask = keys.length - 1;
+		for (int i = hash(agentId) & mask; values[i] >= 0; i = (i + 1) & mask) {
+			if (keys[i] == agentId) {
+				return values[i];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the slot of an agent, after adding the agent if it is not in the store yet
+	 */
+	public int slot(long agentId) {
+		int slot = slotOf(agentId);
+		if (slot >= 0) {
+			return slot;
+		}
+		if (size == agentIds.length) {
+			int capacity = size * 2;
+			agentIds = Arrays.copyOf(agentIds, capacity);
+			lastAppearTimes = Arrays.copyOf(lastAppearTimes, capacity);
+			lastRoads = Arrays.copyOf(lastRoads, capacity);
+			lastOffsets = Arrays.copyOf(lastOffsets, capacity);
+			assignedResources = Arrays.copyOf(assignedResources, capacity);
+			availableSlots = Arrays.copyOf(availableSlots, capacity);
+			availablePositions = Arrays.copyOf(availablePositions, capacity);
+		}
+		slot = size++;
+		agentIds[slot] = agentId;
+		availablePositions[slot] = -1;
+		if (size * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+		insert(agentId, slot);
+		return slot;
+	}
+
+	public long agentId(int slot) {
+		return agentIds[slot];
+	}
+
+	public long lastAppearTime(int slot) {
+		return lastAppearTimes[slot];
+	}
+
+	public Road lastRoad(int slot) {
+		return lastRoads[slot];
+	}
+
+	/**
+	 * @return the distance from the start intersection of the last road at which the agent was last seen
+	 */
+	public double lastOffset(int slot) {
+		return lastOffsets[slot];
+	}
+
+	/**
+	 * @return the location at which the agent was last seen
+	 */
+	public LocationOnRoad lastLocation(int slot) {
+		return new LocationOnRoad(lastRoads[slot], lastOffsets[slot]);
+	}
+
+	/**
+	 * Record the time and the location at which an agent was last seen.
+	 */
+	public void setLastAppearance(int slot, long time, LocationOnRoad location) {
+		lastAppearTimes[slot] = time;
+		setLastLocation(slot, location);
+	}
+
+	public void setLastAppearTime(int slot, long time) {
+		lastAppearTimes[slot] = time;
+	}
+
+	public void setLastLocation(int slot, LocationOnRoad location) {
+		lastRoads[slot] = location.road;
+		lastOffsets[slot] = location.getDistanceFromStartIntersection();
+	}
+
+	/**
+	 * @return the resource assigned to the agent; null if there is none
+	 */
+	public Resource assignedResource(int slot) {
+		return assignedResources[slot];
+	}
+
+	public void setAssignedResource(int slot, Resource resource) {
+		assignedResources[slot] = resource;
+	}
+
+	public boolean isAvailable(int slot) {
+		return availablePositions[slot] >= 0;
+	}
+
+	/**
+	 * Mark an agent as available or not available for assignment.
+	 */
+	public void setAvailable(int slot, boolean available) {
+		int position = availablePositions[slot];
+		if (available && position < 0) {
+			availablePositions[slot] = availableCount;
+			availableSlots[availableCount++] = slot;
+		} else if (!available && position >= 0) {
+			// the order of the list does not matter; fill the hole with the last slot
+			int last = availableSlots[--availableCount];
+			availableSlots[position] = last;
+			availablePositions[last] = position;
+			availablePositions[slot] = -1;
+		}
+	}
+
+	/**
+	 * @return the number of available agents
+	 */
+	public int availableCount() {
+		return availableCount;
+	}
+
+	/**
+	 * The available agents are numbered from 0 to availableCount() - 1 in no particular order. The numbering
+	 * changes when an agent becomes available or not available.
+	 *
+	 * @return the slot of the i-th available agent
+	 */
+	public int availableSlot(int i) {
+		return availableSlots[i];
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, -1);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] >= 0) {
+				insert(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private void insert(long agentId, int slot) {
+		int mask = keys.length - 1;
+		int i = hash(agentId) & mask;
+		while (values[i] >= 0) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = agentId;
+		values[i] = slot;
+	}
+
+	private static int hash(long agentId) {
+		long h = agentId * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
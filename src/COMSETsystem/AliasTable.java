@@ -0,0 +1,102 @@
+package COMSETsystem;
+
+import java.util.SplittableRandom;
+
+/**
+ * AliasTable samples an index from a discrete distribution given by non-negative weights in constant time,
+ * using the alias method of Walker with the construction of Vose. Building the table takes time linear in the
+ * number of weights. A table can be rebuilt with new weights; it reuses its arrays, so once they are large
+ * enough neither building nor sampling allocates.
+ */
+public class AliasTable {
+
+	private int size = 0;
+
+	// Index i is sampled with probability probabilities[i], and aliases[i] otherwise.
+	private double[] probabilities = new double[0];
+	private int[] aliases = new int[0];
+
+	// The work lists of indices with scaled weights below and at least 1.
+	private int[] small = new int[0];
+	private int[] large = new int[0];
+	private double[] scaled = new double[0];
+
+	/**
+	 * Build the table from the first count weights. If the weights add up to zero, the table is empty.
+	 *
+	 * @param weights the weights of the indices, which need not add up to one
+	 * @param count the number of weights
+	 */
+	public void build(double[] weights, int count) {
+		if (probabilities.length < count) {
+			probabilities = new double[count];
+			aliases = new int[count];
+			small = new int[count];
+			large = new int[count];
+			scaled = new double[count];
+		}
+		double total = 0.0;
+		for (int i = 0; i < count; i++) {
+			if (!(weights[i] >= 0.0)) {
+				throw new IllegalArgumentException("weights must not be negative: " + weights[i]);
+			}
+			total += weights[i];
+		}
+		if (!(total > 0.0) || Double.isInfinite(total)) {
+			size = 0;
+			return;
+		}
+		size = count;
+
+		int smallCount = 0;
+		int largeCount = 0;
+		for (int i = 0; i < count; i++) {
+			scaled[i] = weights[i] * count / total;
+			if (scaled[i] < 1.0) {
+				small[smallCount++] = i;
+			} else {
+				large[largeCount++] = i;
+			}
+		}
+		while (smallCount > 0 && largeCount > 0) {
+			int less = small[--smallCount];
+			int more = large[largeCount - 1];
+			probabilities[less] = scaled[less];
+			aliases[less] = more;
+			scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+			if (scaled[more] < 1.0) {
+				largeCount--;
+				small[smallCount++] = more;
+			}
+		}
+		// what is left is 1 up to rounding errors
+		while (largeCount > 0) {
+			int index = large[--largeCount];
+			probabilities[index] = 1.0;
+			aliases[index] = index;
+		}
+		while (smallCount > 0) {
+			int index = small[--smallCount];
+			probabilities[index] = 1.0;
+			aliases[index] = index;
+		}
+	}
+
+	/**
+	 * @return the number of indices the table samples from; 0 if it is empty
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return an index from 0 to size() - 1 with probability proportional to its weight; -1 if the table is empty
+	 */
+	public int sample(SplittableRandom random) {
+		if (size == 0) {
+			return -1;
+		}
+		int index = random.nextInt(size);
+		return random.nextDouble() < probabilities[index] ? index : aliases[index];
+	}
+}
@@ -0,0 +1,65 @@
+package COMSETsystem;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The BatchDispatchEvent class represents the end of a batch dispatch window. When it triggers, the fleet
+ * manager is asked with FleetManager.onBatchDispatch to assign the resources it has collected during the
+ * window, and the event is rescheduled at the end of the next window.
+ * <p>
+ * A BatchDispatchEvent is triggered after all agent and resource events of the same time, so that the
+ * resources that become available at the end of a window are part of the batch.
+ */
+public class BatchDispatchEvent extends Event {
+
+	// The length of a window in simulation time units
+	final long window;
+
+	/**
+	 * Constructor for class BatchDispatchEvent.
+	 *
+	 * @param time the end of the first window
+	 * @param window the length of a window
+	 * @param simulator the simulator object
+	 * @param fleetManager the fleet manager object
+	 */
+	public BatchDispatchEvent(long time, long window, Simulator simulator, FleetManager fleetManager) {
+		super(time, simulator, fleetManager);
+		this.window = window;
+	}
+
+	@Override
+	Event trigger() throws UnsupportedOperationException {
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "******** BatchDispatchEvent id = "+ id +
+				" triggered at time " + getTime(), this);
+
+		List<AgentAction> actions = fleetManager.onBatchDispatch(getTime());
+		for (AgentAction action : actions) {
+			processAgentAction(action);
+		}
+		setTime(getTime() + window);
+		return this;
+	}
+
+	private void processAgentAction(AgentAction agentAction) throws UnsupportedOperationException {
+		if (agentAction == null || agentAction.getType() != AgentAction.Type.ASSIGN) {
+			return;
+		}
+
+		AgentEvent agentEvent = simulator.agentMap.get(agentAction.agentId);
+		ResourceEvent resourceEvent = simulator.resMap.get(agentAction.resId);
+
+		// the agent must be free and the resource must be waiting for an agent and not yet expired
+		if (agentEvent != null && resourceEvent != null && !agentEvent.hasResPickup()
+				&& agentEvent.assignedResource == null && resourceEvent.agentEvent == null
+				&& simulator.hasEvent(resourceEvent)) {
+			agentEvent.assignTo(resourceEvent, getTime());
+			resourceEvent.assignTo(agentEvent);
+		} else {
+			System.out.println("Ignoring invalid batch assignment of resource " + agentAction.resId
+					+ " to agent " + agentAction.agentId);
+		}
+	}
+}
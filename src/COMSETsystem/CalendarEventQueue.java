@@ -0,0 +1,289 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * CalendarEventQueue is an event queue organized as a calendar: time is cut into buckets of fixed width,
+ * and a ring of buckets covers the near future starting at the bucket of the first event. An event is
+ * added to the bucket of its trigger time, and events are polled bucket by bucket.
+ * <p>
+ * A bucket is a plain array. Events are appended to it in constant time, and it is sorted by
+ * Event.compareTo once, when the calendar reaches it; events added to the bucket being polled are inserted
+ * in order. With buckets narrow enough to hold a handful of events each, adding and polling an event take
+ * amortized constant time, whatever the number of pending events.
+ * <p>
+ * Events beyond the ring (e.g., resources appearing hours later) wait in an overflow heap and are moved
+ * into the ring when the calendar reaches them. Ties are broken by Event.compareTo exactly as in
+ * IndexedEventQueue, and every event stores its position in its bucket so that contains is O(1) and remove
+ * only touches the bucket.
+ * <p>
+ * A CalendarEventQueue is not thread-safe.
+ */
+public class CalendarEventQueue implements EventQueue {
+
+	/**
+	 * The events of a bucket, in events[head, end). Unless the bucket is sorted, the events are in no
+	 * particular order.
+	 */
+	private static class Bucket {
+		Event[] events = new Event[4];
+		int head = 0;
+		int end = 0;
+		boolean sorted = false;
+
+		boolean isEmpty() {
+			return head == end;
+		}
+
+		boolean contains(Event event) {
+			int i = event.queuePosition;
+			return i >= head && i < end && events[i] == event;
+		}
+
+		void add(Event event) {
+			if (end == events.length) {
+				if (head > 0) {
+					// reclaim the room of the polled events
+					System.arraycopy(events, head, events, 0, end - head);
+					Arrays.fill(events, end - head, end, null);
+					end -= head;
+					head = 0;
+					reposition(0, end);
+				} else {
+					events = Arrays.copyOf(events, end * 2);
+				}
+			}
+			if (!sorted) {
+				place(event, end++);
+				return;
+			}
+			// keep the bucket being polled in order; most events go to its end
+			int i = end;
+			while (i > head && events[i - 1].compareTo(event) > 0) {
+				place(events[i - 1], i);
+				i--;
+			}
+			place(event, i);
+			end++;
+		}
+
+		Event first() {
+			if (!sorted) {
+				Arrays.sort(events, head, end);
+				reposition(head, end);
+				sorted = true;
+			}
+			return events[head];
+		}
+
+		Event poll() {
+			Event event = first();
+			event.queuePosition = -1;
+			events[head++] = null;
+			if (head == end) {
+				head = 0;
+				end = 0;
+				sorted = false;
+			}
+			return event;
+		}
+
+		void remove(Event event) {
+			int i = event.queuePosition;
+			event.queuePosition = -1;
+			end--;
+			if (sorted) {
+				System.arraycopy(events, i + 1, events, i, end - i);
+				reposition(i, end);
+			} else if (i < end) {
+				place(events[end], i);
+			}
+			events[end] = null;
+			if (head == end) {
+				head = 0;
+				end = 0;
+				sorted = false;
+			}
+		}
+
+		private void place(Event event, int i) {
+			events[i] = event;
+			event.queuePosition = i;
+		}
+
+		private void reposition(int from, int to) {
+			for (int i = from; i < to; i++) {
+				events[i].queuePosition = i;
+			}
+		}
+	}
+
+	// The width of a bucket in simulation time units.
+	private final long bucketWidth;
+
+	// The ring of buckets; bucket number b is held at index b mod buckets.length. Allocated on first use.
+	private final Bucket[] buckets;
+
+	// Events whose bucket is beyond the ring.
+	private final IndexedEventQueue overflow = new IndexedEventQueue();
+
+	// The number of the first bucket of the ring. Only moves forward, and only past empty buckets.
+	private long current = 0;
+
+	// The number of events in the ring.
+	private int ringSize = 0;
+
+	/**
+	 * Constructor of CalendarEventQueue.
+	 *
+	 * @param bucketWidth the width of a bucket in simulation time units
+	 * @param bucketCount the number of buckets of the ring; the ring covers bucketWidth * bucketCount
+	 */
+	public CalendarEventQueue(long bucketWidth, int bucketCount) {
+		if (bucketWidth <= 0 || bucketCount <= 0) {
+			throw new IllegalArgumentException("bucket width and count must be positive");
+		}
+		this.bucketWidth = bucketWidth;
+		this.buckets = new Bucket[bucketCount];
+	}
+
+	@Override
+	public int size() {
+		return ringSize + overflow.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean contains(Event event) {
+		long bucket = bucketOf(event);
+		if (bucket < 0) {
+			return overflow.contains(event);
+		}
+		Bucket holder = buckets[slot(bucket)];
+		return holder != null && holder.contains(event);
+	}
+
+	@Override
+	public void add(Event event) throws IllegalArgumentException {
+		if (contains(event)) {
+			throw new IllegalArgumentException("event " + event.id + " is already in the queue");
+		}
+		long bucket = bucketOf(event);
+		if (bucket < 0) {
+			overflow.add(event);
+			return;
+		}
+		addToRing(event, bucket);
+	}
+
+	@Override
+	public Event peek() {
+		return advance() ? buckets[slot(current)].first() : null;
+	}
+
+	@Override
+	public Event poll() {
+		if (!advance()) {
+			return null;
+		}
+		ringSize--;
+		return buckets[slot(current)].poll();
+	}
+
+	@Override
+	public boolean remove(Event event) {
+		long bucket = bucketOf(event);
+		if (bucket < 0) {
+			return overflow.remove(event);
+		}
+		Bucket holder = buckets[slot(bucket)];
+		if (holder == null || !holder.contains(event)) {
+			return false;
+		}
+		holder.remove(event);
+		ringSize--;
+		return true;
+	}
+
+	/**
+	 * Iterate over a snapshot of the events in no particular order.
+	 */
+	@Override
+	public Iterator<Event> iterator() {
+		List<Event> events = new ArrayList<>(size());
+		for (Bucket bucket : buckets) {
+			if (bucket != null) {
+				events.addAll(Arrays.asList(bucket.events).subList(bucket.head, bucket.end));
+			}
+		}
+		for (Event event : overflow) {
+			events.add(event);
+		}
+		return events.iterator();
+	}
+
+	/**
+	 * @return the number of the bucket an event belongs to given the current position of the ring; -1 if
+	 * the event belongs to the overflow heap
+	 */
+	private long bucketOf(Event event) {
+		long bucket = Math.floorDiv(event.getTime(), bucketWidth);
+		if (bucket >= current + buckets.length) {
+			return -1;
+		}
+		// an event earlier than the ring goes to its first bucket, ahead of all later events there
+		return Math.max(bucket, current);
+	}
+
+	private void addToRing(Event event, long bucket) {
+		int slot = slot(bucket);
+		if (buckets[slot] == null) {
+			buckets[slot] = new Bucket();
+		}
+		buckets[slot].add(event);
+		ringSize++;
+	}
+
+	private int slot(long bucket) {
+		return (int) Math.floorMod(bucket, (long) buckets.length);
+	}
+
+	/**
+	 * Move the ring forward to the first non-empty bucket.
+	 *
+	 * @return false if the queue is empty
+	 */
+	private boolean advance() {
+		if (ringSize == 0) {
+			if (overflow.isEmpty()) {
+				return false;
+			}
+			// skip the empty stretch up to the first waiting event
+			current = Math.floorDiv(overflow.peek().getTime(), bucketWidth);
+			refill();
+		}
+		while (buckets[slot(current)] == null || buckets[slot(current)].isEmpty()) {
+			current++;
+			refill();
+		}
+		return true;
+	}
+
+	/**
+	 * Move the waiting events that fall into the ring from the overflow heap into their buckets.
+	 */
+	private void refill() {
+		long end = current + buckets.length;
+		while (!overflow.isEmpty() && Math.floorDiv(overflow.peek().getTime(), bucketWidth) < end) {
+			Event event = overflow.poll();
+			addToRing(event, Math.floorDiv(event.getTime(), bucketWidth));
+		}
+	}
+}
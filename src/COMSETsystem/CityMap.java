@@ -1,27 +1,28 @@
 package COMSETsystem;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
 import java.util.TreeMap;
 
-import com.google.common.collect.ImmutableList;
 import net.iakovlev.timeshape.TimeZoneEngine;
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
 import DataParsing.GeoProjector;
-import DataParsing.KdTree;
+import DataParsing.LinkIndex;
 
-import java.util.PriorityQueue;
-import java.awt.geom.Point2D;
+import java.util.stream.IntStream;
 import java.time.ZoneId;
 
 
@@ -41,31 +42,45 @@ public class CityMap {
 	// A projector to convert between lat,lon coordinates and xy coordinates.
 	private GeoProjector projector;
 
-	// kdTree for map matching
-	private KdTree kdTree;
+	// spatial index of the links for map matching
+	private LinkIndex linkIndex;
 
 	// Shortest travel-time path table.
-	private ImmutableList<ImmutableList<PathTableEntry>> immutablePathTable;
+	private PathTable pathTable;
 	
 	// A map from an intersection's path table index to the intersection itself.
-	private HashMap<Integer, Intersection> intersectionsByPathTableIndex;
+	private Intersection[] intersectionsByPathTableIndex;
+
+	// The roads between intersections in compressed sparse row form.
+	private RoadGraph roadGraph;
 
 	/*
 	 * Constructor of CityMap
 	 */
 	public CityMap(Map<Long, Intersection> intersections, List<Road> roads, 
-			GeoProjector projector, KdTree kdTree) {
+			GeoProjector projector, LinkIndex linkIndex) {
 		this.intersections = intersections;
 		this.projector = projector;
-		this.kdTree = kdTree;
+		this.linkIndex = linkIndex;
 		this.roads = roads;
 
 		// setup pathTableIndex for every intersection
-		intersectionsByPathTableIndex = new HashMap<Integer, Intersection>();
+		intersectionsByPathTableIndex = new Intersection[intersections.size()];
 		int index = 0;
 		for (Intersection intersection : intersections.values()) {
 			intersection.pathTableIndex = index++;
-			intersectionsByPathTableIndex.put(intersection.pathTableIndex, intersection);
+			intersectionsByPathTableIndex[intersection.pathTableIndex] = intersection;
+		}
+		buildRoadGraph();
+	}
+
+	/**
+	 * Build the compact road network and attach it to every intersection.
+	 */
+	private void buildRoadGraph() {
+		roadGraph = new RoadGraph(intersectionsByPathTableIndex);
+		for (Intersection intersection : intersectionsByPathTableIndex) {
+			intersection.roadGraph = roadGraph;
 		}
 	}
 
@@ -88,7 +103,7 @@ public class CityMap {
 	 * @return the time in seconds it takes to go from source to destination
 	 */
 	public double travelTimeBetween (Intersection source, Intersection destination) {
-		return immutablePathTable.get(source.pathTableIndex).get(destination.pathTableIndex).travelTime;
+		return pathTable.travelTime(source.pathTableIndex, destination.pathTableIndex);
 	}
 
 
@@ -96,13 +111,37 @@ public class CityMap {
 	 * Gets the time it takes to move from a location on a first road to a location on a second road. 
 	 *
 	 * Warning: This function assumes traversal at the speed limit of the roads; the computed travel time
-	 * may be different than the actual travel time.
+	 * may be different than the actual travel time. See travelTimeBetween with a departure time for the
+	 * travel time under a traffic pattern.
 	 *
 	 * @param source The location to depart from
 	 * @param destination The location to arrive at
 	 * @return the time in seconds it takes to go from source to destination
 	 */
 	public long travelTimeBetween (LocationOnRoad source, LocationOnRoad destination) {
+		return Math.round(staticTravelTimeBetween(source, destination));
+	}
+
+	/**
+	 * Gets the time it takes to move from a location on a first road to a location on a second road when
+	 * departing at a given time, with the speeds of the roads adjusted by the speed factors of a traffic pattern.
+	 *
+	 * Since the speed factor at any time applies to all roads alike, the path that is the shortest at the speed
+	 * limits is the shortest at any departure time, and its dynamic travel time follows from its travel time at
+	 * the speed limits by integrating the speed factors from the departure time on.
+	 *
+	 * @param source The location to depart from
+	 * @param destination The location to arrive at
+	 * @param departureTime The time of departure
+	 * @param trafficPattern The traffic pattern giving the speed factors over time
+	 * @return the time it takes to go from source to destination
+	 */
+	public long travelTimeBetween (LocationOnRoad source, LocationOnRoad destination, long departureTime,
+								   TrafficPattern trafficPattern) {
+		return Math.round(trafficPattern.dynamicTravelTime(departureTime, staticTravelTimeBetween(source, destination)));
+	}
+
+	private double staticTravelTimeBetween (LocationOnRoad source, LocationOnRoad destination) {
 		double travelTime = -1;
 
 		if (source.road == destination.road && source.getDisplacementOnRoad(destination) >= 0) {
@@ -117,7 +156,7 @@ public class CityMap {
 			double travelTimeFromEndIntersectionOfSourceToStartIntersectionOfDestination = travelTimeBetween(source.road.to, destination.road.from);
 			travelTime = travelTimeToEndIntersectionOfSource + travelTimeFromEndIntersectionOfSourceToStartIntersectionOfDestination + travelTimeFromStartIntersectionOfDestination;
 		}
-		return Math.round(travelTime);
+		return travelTime;
 	}
 	
 	/**
@@ -136,84 +175,97 @@ public class CityMap {
 	 * @return The closest link to the given point
 	 */
 	public Link getNearestLink(double longitude, double latitude){
-		double[] xy = projector.fromLatLon(latitude, longitude);
-		Point2D p = new Point2D.Double(xy[0], xy[1]);
-		return kdTree.nearest(p);    	
+		return getNearestLinkToPoint(projector.xFromLon(longitude), projector.yFromLat(latitude));
+	}
+
+	/**
+	 * Finds nearest link of a point of the projected 2D space.
+	 *
+	 * @param x The x coordinate of the point
+	 * @param y The y coordinate of the point
+	 * @return The closest link to the given point
+	 */
+	public Link getNearestLinkToPoint(double x, double y) {
+		return linkIndex.nearest(x, y);
 	}
 
 	/**
 	 * Compute all-pair shortest travel times. This is done by computing one-to-all shortest travel times
-	 * from each intersection using Dijkstra.
+	 * from each intersection using Dijkstra. The single-source searches are independent of each other and
+	 * run in parallel; each worker thread reuses its own search state and writes its rows straight into
+	 * the path table.
 	 */
 	public void calcTravelTimes() {
-		ArrayList<ArrayList<PathTableEntry>> pathTable;
-
-		// initialize path table
-		pathTable = new ArrayList<ArrayList<PathTableEntry>>();
-		for (int i = 0; i < intersections.size(); i++) {
-			ArrayList<PathTableEntry> aList = new ArrayList<PathTableEntry>();
-			for (int j = 0; j < intersections.size(); j++) {
-				aList.add(null);
-			}
-			pathTable.add(aList);
-		}
-
-		// creates a queue entry for each intersection
-		HashMap<Intersection, DijkstraQueueEntry> queueEntry = new HashMap<>();
-		for (Intersection i : intersections.values()) {
-			queueEntry.put(i, new DijkstraQueueEntry(i));
-		}
-
-		for (Intersection source : intersections.values()) {
-			// 'reset' every queue entry
-			for (DijkstraQueueEntry entry : queueEntry.values()) {
-				entry.cost = Double.MAX_VALUE;
-				entry.inQueue = true;
-			}
-
-			// source is set at distance 0
-			DijkstraQueueEntry sourceEntry = queueEntry.get(source);
-			sourceEntry.cost = 0;
-			pathTable.get(source.pathTableIndex).set(source.pathTableIndex, new PathTableEntry(0L, source.pathTableIndex));
+		DensePathTable table = new DensePathTable(intersections.size());
+
+		int n = intersectionsByPathTableIndex.length;
+		ThreadLocal<DijkstraSearch> search = ThreadLocal.withInitial(DijkstraSearch::new);
+		ThreadLocal<double[]> rowTravelTimes = ThreadLocal.withInitial(() -> new double[n]);
+		ThreadLocal<int[]> rowPredecessors = ThreadLocal.withInitial(() -> new int[n]);
+		IntStream.range(0, n).parallel().forEach(source -> {
+			search.get().run(source, rowTravelTimes.get(), rowPredecessors.get());
+			table.setRow(source, rowTravelTimes.get(), rowPredecessors.get());
+		});
+
+		pathTable = table;
+	}
 
-			PriorityQueue<DijkstraQueueEntry> queue = new PriorityQueue<>(queueEntry.values());
+	/**
+	 * Set up shortest travel times to be computed on demand instead of for all pairs up front. The
+	 * one-to-all shortest travel times from a source intersection are computed the first time the source
+	 * is queried and kept in a least-recently-used cache bounded by a memory budget.
+	 *
+	 * @param memoryBudget the maximum number of bytes to be taken by cached shortest travel times
+	 */
+	public void calcTravelTimesOnDemand(long memoryBudget) {
+		ThreadLocal<DijkstraSearch> search = ThreadLocal.withInitial(DijkstraSearch::new);
+		pathTable = new LazyPathTable(intersections.size(), memoryBudget,
+				(source, travelTimes, predecessors) -> search.get().run(source, travelTimes, predecessors));
+	}
 
-			while (!queue.isEmpty()) {
-				DijkstraQueueEntry entry = queue.poll();
-				entry.inQueue = false;
-
-				for (Road r : entry.intersection.getRoadsFrom()) {
-					DijkstraQueueEntry v = queueEntry.get(r.to);
-					if (!v.inQueue) continue;
-					double ncost = entry.cost + r.travelTime;
-					if (v.cost > ncost) {
-						queue.remove(v);
-						v.cost = ncost;
-						pathTable.get(source.pathTableIndex).set(v.intersection.pathTableIndex, new PathTableEntry(v.cost, entry.intersection.pathTableIndex));
-						queue.add(v);
-					}
-				}
-			}
+	/**
+	 * Set up shortest travel times to be answered by a contraction hierarchy instead of an all-pair table.
+	 * The preprocessing adds shortcut roads to the map graph, taking memory linear in the size of the map,
+	 * after which a query only settles a small number of intersections.
+	 */
+	public void calcContractionHierarchy() {
+		int roadCount = roadGraph.roadCount();
+		int[] from = new int[roadCount];
+		for (int i = 0; i < roadGraph.size(); i++) {
+			Arrays.fill(from, roadGraph.outOffsets[i], roadGraph.outOffsets[i + 1], i);
 		}
+		pathTable = new ContractionHierarchy(roadGraph.size(), from, roadGraph.outTargets, roadGraph.outTravelTimes);
+	}
 
-		// Make the path table unmodifiable
-		makePathTableUnmodifiable(pathTable);
+	/**
+	 * @return the path table answering shortest travel time queries
+	 */
+	PathTable pathTable() {
+		return pathTable;
 	}
 
 	/**
-	 * Make a path table unmodifiable.
-	 * @param pathTable
+	 * Load all-pair shortest travel times from a cache, or compute them and write them to the cache
+	 * if the cache does not hold a valid path table for this map. A path table loaded from the cache
+	 * is served straight from the cache file mapped into memory.
+	 *
+	 * @param cache the path table cache of this map
 	 */
-	public void makePathTableUnmodifiable(ArrayList<ArrayList<PathTableEntry>> pathTable) {
-		ArrayList<ImmutableList<PathTableEntry>> aListOfImmutableList = new ArrayList<ImmutableList<PathTableEntry>>();
-		for (int i = 0; i < intersections.size(); i++) {
-			ArrayList<PathTableEntry> aListOfPathTableEntries = pathTable.get(i);
-			aListOfImmutableList.add(ImmutableList.copyOf(aListOfPathTableEntries));
-			aListOfPathTableEntries.clear();
+	void calcTravelTimes(PathTableCache cache) {
+		PathTable cached = cache.load(intersections.size());
+		if (cached != null) {
+			System.out.println("Loaded all pair travel times from " + cache.file());
+			pathTable = cached;
+			return;
 		}
-		pathTable.clear();
 
-		immutablePathTable = ImmutableList.copyOf(aListOfImmutableList);
+		calcTravelTimes();
+		try {
+			cache.store((DensePathTable) pathTable);
+			System.out.println("Saved all pair travel times to " + cache.file());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
 	/**
@@ -224,51 +276,59 @@ public class CityMap {
 	 */
 	public LinkedList<Intersection> shortestTravelTimePath(Intersection source, Intersection destination) {
 		LinkedList<Intersection> path = new LinkedList<Intersection>();
-		path.addFirst(destination);
-		int current = destination.pathTableIndex;
-		while (current != source.pathTableIndex) {
-			int pred = immutablePathTable.get(source.pathTableIndex).get(current).predecessor;
-			path.addFirst(intersectionsByPathTableIndex.get(pred));
-			current = pred;
+		for (int index : pathTable.path(source.pathTableIndex, destination.pathTableIndex)) {
+			path.addLast(intersectionsByPathTableIndex[index]);
 		}
 		return path;
 	}
 
-	private class DijkstraQueueEntry implements Comparable<DijkstraQueueEntry> {
-		Intersection intersection;
-		double cost = Double.MAX_VALUE;
-		boolean inQueue = true;
+	/**
+	 * The state of a single-source Dijkstra search over path table indices. Intersections enter the queue
+	 * when they are first reached and have their cost lowered in place when a cheaper road is found. Ties
+	 * are broken by path table index, which is the same as breaking them by intersection id.
+	 * A search object is not thread-safe; every worker thread uses its own.
+	 */
+	private class DijkstraSearch {
+		final boolean[] settled = new boolean[intersectionsByPathTableIndex.length];
+		final IndexedMinHeap queue = new IndexedMinHeap(intersectionsByPathTableIndex.length);
+
+		/**
+		 * Compute the shortest travel times from a source to all intersections.
+		 *
+		 * @param source path table index of the source intersection
+		 * @param cost receives the shortest travel times from source indexed by destination
+		 * @param predecessor receives the predecessors on the shortest paths from source indexed by destination
+		 */
+		void run(int source, double[] cost, int[] predecessor) {
+			// 'reset' the search state
+			Arrays.fill(cost, Double.MAX_VALUE);
+			Arrays.fill(predecessor, -1);
+			Arrays.fill(settled, false);
+			queue.clear();
 
-		DijkstraQueueEntry(Intersection intersection) {
-			this.intersection = intersection;
-		}
+			// source is set at distance 0
+			cost[source] = 0;
+			predecessor[source] = source;
+			queue.insert(source, 0);
 
-		@Override
-		public int compareTo(DijkstraQueueEntry j) {
-			if (this.cost < j.cost) {
-				return -1;
-			} else if (this.cost > j.cost) {
-				return 1;
-			} else if (this.intersection.id < j.intersection.id) {
-				return -1;
-			} else if (this.intersection.id > j.intersection.id) {
-				return 1;
-			} else {
-				return 0;
+			while (!queue.isEmpty()) {
+				int node = queue.poll();
+				settled[node] = true;
+
+				for (int k = roadGraph.outOffsets[node]; k < roadGraph.outOffsets[node + 1]; k++) {
+					int v = roadGraph.outTargets[k];
+					if (settled[v]) continue;
+					double ncost = cost[node] + roadGraph.outTravelTimes[k];
+					if (cost[v] > ncost) {
+						cost[v] = ncost;
+						predecessor[v] = node;
+						queue.insertOrDecrease(v, ncost);
+					}
+				}
 			}
 		}
 	}
 
-	private class PathTableEntry {
-		final double travelTime;
-		final int predecessor;
-
-		PathTableEntry(double travelTime, int predecessor) {
-			this.travelTime = travelTime;
-			this.predecessor = predecessor;
-		}
-	}
-
 	/**
 	 * @return { @code roads }
 	 */
@@ -283,6 +343,34 @@ public class CityMap {
 		return intersections;
 	}
 
+	/**
+	 * Make the map read-only so that it can be shared by the simulator and the agents without copying.
+	 * The intersections and roads of the map and the adjacency maps of every intersection and vertex are
+	 * replaced by unmodifiable views; an attempt to add or remove any of them throws
+	 * UnsupportedOperationException. The attributes of intersections, roads and links are shared as well
+	 * and must be treated as read-only.
+	 */
+	public void makeReadOnly() {
+		for (Intersection intersection : intersections.values()) {
+			intersection.roadsMapFrom = Collections.unmodifiableMap(intersection.roadsMapFrom);
+			intersection.roadsMapTo = Collections.unmodifiableMap(intersection.roadsMapTo);
+		}
+		// vertices are shared by consecutive links; wrap each of them only once
+		Set<Vertex> vertices = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Road road : roads) {
+			for (Link link : road.links) {
+				vertices.add(link.from);
+				vertices.add(link.to);
+			}
+		}
+		for (Vertex vertex : vertices) {
+			vertex.linksMapFrom = Collections.unmodifiableMap(vertex.linksMapFrom);
+			vertex.linksMapTo = Collections.unmodifiableMap(vertex.linksMapTo);
+		}
+		intersections = Collections.unmodifiableMap(intersections);
+		roads = Collections.unmodifiableList(roads);
+	}
+
 	/**
 	 * 
 	 * @return a deep copy of the map
@@ -357,14 +445,15 @@ public class CityMap {
 		CityMap cityMap = new CityMap();
 		cityMap.intersections = intersectionsCopy;
 		cityMap.roads = roadsCopy;
-		cityMap.immutablePathTable = immutablePathTable;
+		cityMap.pathTable = pathTable;
 		cityMap.projector = projector;
-		cityMap.kdTree = kdTree;
+		cityMap.linkIndex = linkIndex;
 		
-		cityMap.intersectionsByPathTableIndex = new HashMap<Integer, Intersection>();
+		cityMap.intersectionsByPathTableIndex = new Intersection[cityMap.intersections.size()];
 		for (Intersection intersection : cityMap.intersections.values()) {
-			cityMap.intersectionsByPathTableIndex.put(intersection.pathTableIndex, intersection);
+			cityMap.intersectionsByPathTableIndex[intersection.pathTableIndex] = intersection;
 		}
+		cityMap.buildRoadGraph();
 		
 		return cityMap;
 	}
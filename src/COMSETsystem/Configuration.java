@@ -2,6 +2,8 @@ package COMSETsystem;
 
 import MapCreation.MapCreator;
 
+import java.io.IOException;
+
 /**
  * Class to hold the configuration parameters of the simulation. Call static method Configuration.make() first to
  * create a singleton configuration object, then call Configuration.get() to retrieve the singleton.
@@ -16,6 +18,41 @@ public class Configuration {
     // Full path to a TLC New York Yellow trip record file
     public final String resourceFile;
 
+    // Directory holding cached path tables; null if path tables are not cached
+    public final String pathTableCacheDirectory;
+
+    // Directory holding cached map matched trips of resource datasets; null if trips are not cached
+    public final String datasetCacheDirectory;
+
+    // How shortest travel times between intersections are computed and stored.
+    public enum PathTableType {
+        // all pairs computed up front
+        DENSE,
+        // rows computed on demand and kept in a bounded cache
+        LAZY,
+        // queries answered by bidirectional searches over a contraction hierarchy
+        CONTRACTION_HIERARCHIES
+    }
+    public final PathTableType pathTableType;
+
+    // Maximum number of bytes taken by cached rows of a LAZY path table
+    public final long pathTableMemoryBudget;
+
+    // The scheduler holding the pending events of the simulation.
+    public enum EventQueueType {
+        // binary heap
+        HEAP,
+        // calendar of buckets a fraction of a second wide
+        CALENDAR
+    }
+    public final EventQueueType eventQueueType;
+
+    // Number of buckets per second of a CALENDAR event queue; narrow buckets hold few events each
+    static final int CALENDAR_BUCKETS_PER_SECOND = 16;
+
+    // Number of seconds a CALENDAR event queue covers ahead before events wait in its overflow heap
+    private static final int CALENDAR_SECONDS = 4096;
+
     public static long timeResolution = 1000000;
     public static double minimumDistance = 54/(double)timeResolution;
 
@@ -32,6 +69,9 @@ public class Configuration {
     // Traffic pattern step in seconds
     public final long trafficPatternStep, trafficPatternStepInSeconds;
     public final long agentPlacementRandomSeed;
+    // The window over which available resources are collected and assigned together; 0 if every resource is
+    // assigned as soon as it becomes available
+    public final long batchDispatchWindow, batchDispatchWindowInSeconds;
 
     protected static Configuration singletonConfiguration;
 
@@ -50,7 +90,13 @@ public class Configuration {
                           long agentPlacementRandomSeed,
                           boolean dynamicTrafficEnabled,
                           long trafficPatternEpoch,
-                          long trafficPatternStep) {
+                          long trafficPatternStep,
+                          String pathTableCacheDirectory,
+                          PathTableType pathTableType,
+                          long pathTableMemoryBudget,
+                          EventQueueType eventQueueType,
+                          long batchDispatchWindow,
+                          String datasetCacheDirectory) {
         this.fleetManagerClass = fleetManagerClass;
         this.mapJSONFile = mapJSONFile;
         this.resourceFile = resourceFile;
@@ -65,12 +111,24 @@ public class Configuration {
         this.trafficPatternEpoch = trafficPatternEpochInSeconds * timeResolution;
         trafficPatternStepInSeconds = trafficPatternStep;
         this.trafficPatternStep = trafficPatternStepInSeconds * timeResolution;
+        this.pathTableCacheDirectory = pathTableCacheDirectory;
+        this.pathTableType = pathTableType;
+        this.pathTableMemoryBudget = pathTableMemoryBudget;
+        this.eventQueueType = eventQueueType;
+        batchDispatchWindowInSeconds = batchDispatchWindow;
+        this.batchDispatchWindow = batchDispatchWindowInSeconds * timeResolution;
+        this.datasetCacheDirectory = datasetCacheDirectory;
 
         map = makeCityMap();
 
-        // Pre-compute shortest travel times between all pairs of intersections.
-        System.out.println("Pre-computing all pair travel times...");
-        map.calcTravelTimes();
+        // Pre-compute shortest travel times between all pairs of intersections, unless they are computed
+        // on demand.
+        if (pathTableType == PathTableType.DENSE) {
+            System.out.println("Pre-computing all pair travel times...");
+        } else if (pathTableType == PathTableType.CONTRACTION_HIERARCHIES) {
+            System.out.println("Building contraction hierarchy...");
+        }
+        calcTravelTimes();
     }
 
     public static void make(Class<? extends FleetManager> fleetManagerClass,
@@ -82,7 +140,13 @@ public class Configuration {
                             long agentPlacementRandomSeed,
                             boolean dynamicTraffic,
                             long trafficPatternEpoch,
-                            long trafficPatternStep) {
+                            long trafficPatternStep,
+                            String pathTableCacheDirectory,
+                            PathTableType pathTableType,
+                            long pathTableMemoryBudget,
+                            EventQueueType eventQueueType,
+                            long batchDispatchWindow,
+                            String datasetCacheDirectory) {
         if (singletonConfiguration == null) {
             singletonConfiguration = new Configuration(
                     fleetManagerClass,
@@ -94,7 +158,13 @@ public class Configuration {
                     agentPlacementRandomSeed,
                     dynamicTraffic,
                     trafficPatternEpoch,
-                    trafficPatternStep);
+                    trafficPatternStep,
+                    pathTableCacheDirectory,
+                    pathTableType,
+                    pathTableMemoryBudget,
+                    eventQueueType,
+                    batchDispatchWindow,
+                    datasetCacheDirectory);
         }
     }
 
@@ -127,4 +197,48 @@ public class Configuration {
         // Output the map
         return creator.outputCityMap();
     }
+
+    /**
+     * @return an empty event queue of the configured type
+     */
+    public EventQueue makeEventQueue() {
+        if (eventQueueType == EventQueueType.CALENDAR) {
+            return makeCalendarEventQueue();
+        }
+        return new IndexedEventQueue();
+    }
+
+    static CalendarEventQueue makeCalendarEventQueue() {
+        return new CalendarEventQueue(Math.max(1, timeResolution / CALENDAR_BUCKETS_PER_SECOND),
+                CALENDAR_SECONDS * CALENDAR_BUCKETS_PER_SECOND);
+    }
+
+    private void calcTravelTimes() {
+        if (pathTableType != PathTableType.DENSE && pathTableCacheDirectory != null) {
+            // only the dense table is cached; the other tables are built anew by every run
+            System.out.println("Warning: comset.path_table_cache_dir is ignored by the " + pathTableType
+                    + " path table");
+        }
+        if (pathTableType == PathTableType.LAZY) {
+            map.calcTravelTimesOnDemand(pathTableMemoryBudget);
+            return;
+        }
+        if (pathTableType == PathTableType.CONTRACTION_HIERARCHIES) {
+            map.calcContractionHierarchy();
+            return;
+        }
+        if (pathTableCacheDirectory == null) {
+            map.calcTravelTimes();
+            return;
+        }
+        PathTableCache cache;
+        try {
+            cache = new PathTableCache(pathTableCacheDirectory, mapJSONFile, boundingPolygonKMLFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+            map.calcTravelTimes();
+            return;
+        }
+        map.calcTravelTimes(cache);
+    }
 }
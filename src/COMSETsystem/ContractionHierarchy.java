@@ -0,0 +1,459 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * A ContractionHierarchy answers shortest travel time queries with memory linear in the size of the map
+ * instead of the quadratic memory of an all-pair table.
+ * <p>
+ * Preprocessing contracts the intersections one by one in the order of their importance. Contracting an
+ * intersection v removes it from the remaining graph and adds a shortcut road u->w for every pair of
+ * roads u->v->w whose travel time cannot be matched by a path avoiding v (found by a bounded "witness"
+ * search). The importance of an intersection is the number of shortcuts its contraction adds minus the
+ * number of roads it removes, plus the number of already contracted neighbors; it is re-evaluated lazily
+ * when the intersection reaches the front of the queue.
+ * <p>
+ * A query runs a bidirectional Dijkstra in which both searches only follow roads (original or shortcut)
+ * towards intersections contracted later. Such searches settle a few hundred intersections even on
+ * city-scale maps. Shortcuts remember the two roads they replace, so the found path is unpacked into
+ * the original intersections.
+ * <p>
+ * Travel times may differ from an all-pair Dijkstra in the last bits because the road travel times are
+ * summed in a different order, and among several shortest paths a different one may be returned.
+ */
+class ContractionHierarchy implements PathTable {
+
+	// The maximum number of intersections settled by a witness search. Failing to find a witness only
+	// adds a superfluous shortcut; it never makes a query wrong.
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+
+	private final int size;
+
+	// Roads of the hierarchy: the original roads followed by the shortcuts. A shortcut replaces the
+	// roads edgeFirst and edgeSecond; both are -1 for an original road.
+	private int edgeCount = 0;
+	private int[] edgeFrom;
+	private int[] edgeTo;
+	private double[] edgeWeight;
+	private int[] edgeFirst;
+	private int[] edgeSecond;
+
+	// The position of each intersection in the contraction order.
+	private final int[] rank;
+
+	// Roads leading to higher ranked intersections, grouped by start intersection, for the forward search.
+	private int[] upOffsets;
+	private int[] upEdges;
+
+	// Roads coming from higher ranked intersections, grouped by end intersection, for the backward search.
+	private int[] downOffsets;
+	private int[] downEdges;
+
+	// Every thread runs its queries on its own search state.
+	private final ThreadLocal<Query> query;
+
+	/**
+	 * Constructor of ContractionHierarchy. Contracts the graph given by a list of directed roads.
+	 *
+	 * @param size the number of intersections
+	 * @param from path table index of the start intersection of each road
+	 * @param to path table index of the end intersection of each road
+	 * @param weight travel time in seconds of each road
+	 */
+	ContractionHierarchy(int size, int[] from, int[] to, double[] weight) {
+		this.size = size;
+		int capacity = Math.max(16, from.length * 2);
+		edgeFrom = new int[capacity];
+		edgeTo = new int[capacity];
+		edgeWeight = new double[capacity];
+		edgeFirst = new int[capacity];
+		edgeSecond = new int[capacity];
+		rank = new int[size];
+
+		new Contraction(from, to, weight).run();
+		buildSearchGraphs();
+
+		query = ThreadLocal.withInitial(Query::new);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public double travelTime(int source, int destination) {
+		if (source == destination) {
+			return 0;
+		}
+		Query q = query.get();
+		q.run(source, destination);
+		double best = q.best;
+		q.reset();
+		return best;
+	}
+
+	@Override
+	public int predecessor(int source, int destination) {
+		if (source == destination) {
+			return source;
+		}
+		int[] path = path(source, destination);
+		return path == null ? -1 : path[path.length - 2];
+	}
+
+	@Override
+	public int[] path(int source, int destination) {
+		if (source == destination) {
+			return new int[] {source};
+		}
+		Query q = query.get();
+		q.run(source, destination);
+		int[] path = q.meeting < 0 ? null : q.unpackPath(source, destination);
+		q.reset();
+		return path;
+	}
+
+	private int addEdge(int from, int to, double weight, int first, int second) {
+		if (edgeCount == edgeFrom.length) {
+			int capacity = edgeCount * 2;
+			edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+			edgeTo = Arrays.copyOf(edgeTo, capacity);
+			edgeWeight = Arrays.copyOf(edgeWeight, capacity);
+			edgeFirst = Arrays.copyOf(edgeFirst, capacity);
+			edgeSecond = Arrays.copyOf(edgeSecond, capacity);
+		}
+		edgeFrom[edgeCount] = from;
+		edgeTo[edgeCount] = to;
+		edgeWeight[edgeCount] = weight;
+		edgeFirst[edgeCount] = first;
+		edgeSecond[edgeCount] = second;
+		return edgeCount++;
+	}
+
+	/**
+	 * Group the roads of the hierarchy by the direction in which the query searches follow them.
+	 */
+	private void buildSearchGraphs() {
+		upOffsets = new int[size + 1];
+		downOffsets = new int[size + 1];
+		for (int e = 0; e < edgeCount; e++) {
+			if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+				upOffsets[edgeFrom[e] + 1]++;
+			} else {
+				downOffsets[edgeTo[e] + 1]++;
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			upOffsets[i + 1] += upOffsets[i];
+			downOffsets[i + 1] += downOffsets[i];
+		}
+		upEdges = new int[upOffsets[size]];
+		downEdges = new int[downOffsets[size]];
+		int[] upFill = Arrays.copyOf(upOffsets, size);
+		int[] downFill = Arrays.copyOf(downOffsets, size);
+		for (int e = 0; e < edgeCount; e++) {
+			if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+				upEdges[upFill[edgeFrom[e]]++] = e;
+			} else {
+				downEdges[downFill[edgeTo[e]]++] = e;
+			}
+		}
+
+		edgeFrom = Arrays.copyOf(edgeFrom, edgeCount);
+		edgeTo = Arrays.copyOf(edgeTo, edgeCount);
+		edgeWeight = Arrays.copyOf(edgeWeight, edgeCount);
+		edgeFirst = Arrays.copyOf(edgeFirst, edgeCount);
+		edgeSecond = Arrays.copyOf(edgeSecond, edgeCount);
+	}
+
+	/**
+	 * A growable list of ints.
+	 */
+	private static class IntList {
+		int[] values = new int[4];
+		int size = 0;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+
+	/**
+	 * The state of the preprocessing.
+	 */
+	private class Contraction {
+		// Roads entering and leaving each intersection, including shortcuts.
+		final IntList[] in = new IntList[size];
+		final IntList[] out = new IntList[size];
+
+		final boolean[] contracted = new boolean[size];
+		final int[] contractedNeighbors = new int[size];
+
+		// Witness search state.
+		final double[] witnessCost = new double[size];
+		final IntList witnessTouched = new IntList();
+		final IndexedMinHeap witnessQueue = new IndexedMinHeap(size);
+
+		Contraction(int[] from, int[] to, double[] weight) {
+			for (int i = 0; i < size; i++) {
+				in[i] = new IntList();
+				out[i] = new IntList();
+			}
+			Arrays.fill(witnessCost, Double.MAX_VALUE);
+			for (int i = 0; i < from.length; i++) {
+				if (from[i] == to[i]) {
+					// a road back to its start intersection is never on a shortest path, and contracting its
+					// intersection would add shortcuts through it forever
+					continue;
+				}
+				int e = addEdge(from[i], to[i], weight[i], -1, -1);
+				out[from[i]].add(e);
+				in[to[i]].add(e);
+			}
+		}
+
+		void run() {
+			IndexedMinHeap order = new IndexedMinHeap(size);
+			for (int v = 0; v < size; v++) {
+				order.insert(v, priority(v));
+			}
+
+			int nextRank = 0;
+			while (!order.isEmpty()) {
+				int v = order.poll();
+				double priority = priority(v);
+				if (!order.isEmpty() && priority > order.key(order.peek())) {
+					// v became less attractive since its priority was computed; try again later
+					order.insert(v, priority);
+					continue;
+				}
+				contract(v, false);
+				contracted[v] = true;
+				rank[v] = nextRank++;
+				for (int i = 0; i < in[v].size; i++) contractedNeighbors[edgeFrom[in[v].values[i]]]++;
+				for (int i = 0; i < out[v].size; i++) contractedNeighbors[edgeTo[out[v].values[i]]]++;
+			}
+		}
+
+		double priority(int v) {
+			int removed = 0;
+			for (int i = 0; i < in[v].size; i++) {
+				if (!contracted[edgeFrom[in[v].values[i]]]) removed++;
+			}
+			for (int i = 0; i < out[v].size; i++) {
+				if (!contracted[edgeTo[out[v].values[i]]]) removed++;
+			}
+			return contract(v, true) - removed + contractedNeighbors[v];
+		}
+
+		/**
+		 * Add the shortcuts needed to remove an intersection from the remaining graph.
+		 *
+		 * @param v the intersection to contract
+		 * @param simulate if true, only count the shortcuts without adding them
+		 * @return the number of shortcuts
+		 */
+		int contract(int v, boolean simulate) {
+			int shortcuts = 0;
+			for (int i = 0; i < in[v].size; i++) {
+				int inEdge = in[v].values[i];
+				int u = edgeFrom[inEdge];
+				if (contracted[u]) continue;
+
+				double maxCost = -1;
+				for (int j = 0; j < out[v].size; j++) {
+					int outEdge = out[v].values[j];
+					int w = edgeTo[outEdge];
+					if (contracted[w] || w == u) continue;
+					maxCost = Math.max(maxCost, edgeWeight[inEdge] + edgeWeight[outEdge]);
+				}
+				if (maxCost < 0) continue;
+
+				witnessSearch(u, v, maxCost);
+				for (int j = 0; j < out[v].size; j++) {
+					int outEdge = out[v].values[j];
+					int w = edgeTo[outEdge];
+					if (contracted[w] || w == u) continue;
+					double cost = edgeWeight[inEdge] + edgeWeight[outEdge];
+					if (witnessCost[w] > cost) {
+						shortcuts++;
+						if (!simulate) {
+							int e = addEdge(u, w, cost, inEdge, outEdge);
+							out[u].add(e);
+							in[w].add(e);
+						}
+					}
+				}
+				resetWitnessSearch();
+			}
+			return shortcuts;
+		}
+
+		/**
+		 * Dijkstra from a source over the remaining graph without an intersection, up to a maximum cost.
+		 */
+		void witnessSearch(int source, int without, double maxCost) {
+			witnessCost[source] = 0;
+			witnessTouched.add(source);
+			witnessQueue.insert(source, 0);
+			int settled = 0;
+			while (!witnessQueue.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+				int node = witnessQueue.poll();
+				if (witnessCost[node] > maxCost) break;
+				settled++;
+				for (int i = 0; i < out[node].size; i++) {
+					int e = out[node].values[i];
+					int next = edgeTo[e];
+					if (contracted[next] || next == without) continue;
+					double cost = witnessCost[node] + edgeWeight[e];
+					if (cost < witnessCost[next]) {
+						if (witnessCost[next] == Double.MAX_VALUE) witnessTouched.add(next);
+						witnessCost[next] = cost;
+						witnessQueue.insertOrDecrease(next, cost);
+					}
+				}
+			}
+		}
+
+		void resetWitnessSearch() {
+			for (int i = 0; i < witnessTouched.size; i++) {
+				witnessCost[witnessTouched.values[i]] = Double.MAX_VALUE;
+			}
+			witnessTouched.size = 0;
+			witnessQueue.clear();
+		}
+	}
+
+	/**
+	 * The state of a bidirectional query.
+	 */
+	private class Query {
+		final double[] forwardCost = new double[size];
+		final double[] backwardCost = new double[size];
+		// The road through which an intersection was reached in each search.
+		final int[] forwardEdge = new int[size];
+		final int[] backwardEdge = new int[size];
+		final IndexedMinHeap forwardQueue = new IndexedMinHeap(size);
+		final IndexedMinHeap backwardQueue = new IndexedMinHeap(size);
+		final IntList touched = new IntList();
+
+		// The travel time of the best path found and the intersection at which its two halves meet.
+		double best;
+		int meeting;
+
+		Query() {
+			Arrays.fill(forwardCost, Double.MAX_VALUE);
+			Arrays.fill(backwardCost, Double.MAX_VALUE);
+		}
+
+		void run(int source, int destination) {
+			best = Double.MAX_VALUE;
+			meeting = -1;
+			touch(source);
+			touch(destination);
+			forwardCost[source] = 0;
+			forwardEdge[source] = -1;
+			forwardQueue.insert(source, 0);
+			backwardCost[destination] = 0;
+			backwardEdge[destination] = -1;
+			backwardQueue.insert(destination, 0);
+
+			boolean forwardTurn = true;
+			while (true) {
+				boolean forward = !forwardQueue.isEmpty() && forwardQueue.key(forwardQueue.peek()) < best;
+				boolean backward = !backwardQueue.isEmpty() && backwardQueue.key(backwardQueue.peek()) < best;
+				if (!forward && !backward) break;
+				if (forward && (forwardTurn || !backward)) {
+					int node = forwardQueue.poll();
+					meet(node);
+					for (int i = upOffsets[node]; i < upOffsets[node + 1]; i++) {
+						int e = upEdges[i];
+						relax(forwardQueue, forwardCost, forwardEdge, edgeTo[e], forwardCost[node] + edgeWeight[e], e);
+					}
+				} else {
+					int node = backwardQueue.poll();
+					meet(node);
+					for (int i = downOffsets[node]; i < downOffsets[node + 1]; i++) {
+						int e = downEdges[i];
+						relax(backwardQueue, backwardCost, backwardEdge, edgeFrom[e], backwardCost[node] + edgeWeight[e], e);
+					}
+				}
+				forwardTurn = !forwardTurn;
+			}
+		}
+
+		private void meet(int node) {
+			if (forwardCost[node] == Double.MAX_VALUE || backwardCost[node] == Double.MAX_VALUE) return;
+			double cost = forwardCost[node] + backwardCost[node];
+			if (cost < best) {
+				best = cost;
+				meeting = node;
+			}
+		}
+
+		private void relax(IndexedMinHeap queue, double[] cost, int[] edge, int node, double newCost, int e) {
+			if (newCost < cost[node]) {
+				if (forwardCost[node] == Double.MAX_VALUE && backwardCost[node] == Double.MAX_VALUE) touch(node);
+				cost[node] = newCost;
+				edge[node] = e;
+				queue.insertOrDecrease(node, newCost);
+			}
+		}
+
+		private void touch(int node) {
+			touched.add(node);
+		}
+
+		/**
+		 * @return the intersections of the path found by the last run, from source to destination
+		 */
+		int[] unpackPath(int source, int destination) {
+			IntList edges = new IntList();
+			// the forward half, collected backwards from the meeting intersection
+			for (int node = meeting; node != source; node = edgeFrom[forwardEdge[node]]) {
+				edges.add(forwardEdge[node]);
+			}
+			for (int i = 0, j = edges.size - 1; i < j; i++, j--) {
+				int tmp = edges.values[i];
+				edges.values[i] = edges.values[j];
+				edges.values[j] = tmp;
+			}
+			// the backward half
+			for (int node = meeting; node != destination; node = edgeTo[backwardEdge[node]]) {
+				edges.add(backwardEdge[node]);
+			}
+
+			IntList path = new IntList();
+			path.add(source);
+			IntList stack = new IntList();
+			for (int i = 0; i < edges.size; i++) {
+				stack.add(edges.values[i]);
+				while (stack.size > 0) {
+					int e = stack.values[--stack.size];
+					if (edgeFirst[e] < 0) {
+						path.add(edgeTo[e]);
+					} else {
+						// push the second half first so that the first half is unpacked first
+						stack.add(edgeSecond[e]);
+						stack.add(edgeFirst[e]);
+					}
+				}
+			}
+			return Arrays.copyOf(path.values, path.size);
+		}
+
+		void reset() {
+			for (int i = 0; i < touched.size; i++) {
+				forwardCost[touched.values[i]] = Double.MAX_VALUE;
+				backwardCost[touched.values[i]] = Double.MAX_VALUE;
+			}
+			touched.size = 0;
+			forwardQueue.clear();
+			backwardQueue.clear();
+		}
+	}
+}
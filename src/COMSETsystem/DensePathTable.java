@@ -0,0 +1,80 @@
+package COMSETsystem;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * The DensePathTable holds the all-pair shortest travel times of a map together with the predecessor of each
+ * destination on the shortest path from each source. Entries are stored in flat primitive arrays in
+ * row-major order, i.e., the entry for (source, destination) is at index source * size + destination.
+ */
+class DensePathTable implements PathTable {
+
+	// The number of intersections covered by the table.
+	private final int size;
+
+	// Shortest travel times in seconds; Double.MAX_VALUE if the destination is unreachable.
+	private final double[] travelTimes;
+
+	// Path table index of the intersection preceding the destination on the shortest path; -1 if unreachable.
+	private final int[] predecessors;
+
+	/**
+	 * Constructor of DensePathTable. All destinations are initially unreachable.
+	 *
+	 * @param size the number of intersections
+	 * @throws IllegalArgumentException if size * size entries do not fit into an array
+	 */
+	DensePathTable(int size) throws IllegalArgumentException {
+		long entries = (long) size * size;
+		if (entries > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("too many intersections for a dense path table: " + size);
+		}
+		this.size = size;
+		travelTimes = new double[(int) entries];
+		predecessors = new int[(int) entries];
+		Arrays.fill(travelTimes, Double.MAX_VALUE);
+		Arrays.fill(predecessors, -1);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public double travelTime(int source, int destination) {
+		return travelTimes[source * size + destination];
+	}
+
+	@Override
+	public int predecessor(int source, int destination) {
+		return predecessors[source * size + destination];
+	}
+
+	/**
+	 * Set the row of a source intersection.
+	 *
+	 * @param source path table index of the source intersection
+	 * @param rowTravelTimes shortest travel times from source indexed by destination
+	 * @param rowPredecessors predecessors on the shortest paths from source indexed by destination
+	 */
+	void setRow(int source, double[] rowTravelTimes, int[] rowPredecessors) {
+		System.arraycopy(rowTravelTimes, 0, travelTimes, source * size, size);
+		System.arraycopy(rowPredecessors, 0, predecessors, source * size, size);
+	}
+
+	/**
+	 * Copy the rows from firstRow (inclusive) to lastRow (exclusive) into buffers.
+	 *
+	 * @param firstRow the first row to copy
+	 * @param lastRow the row after the last row to copy
+	 * @param travelTimeBuffer the buffer receiving the travel times
+	 * @param predecessorBuffer the buffer receiving the predecessors
+	 */
+	void copyRows(int firstRow, int lastRow, DoubleBuffer travelTimeBuffer, IntBuffer predecessorBuffer) {
+		travelTimeBuffer.put(travelTimes, firstRow * size, (lastRow - firstRow) * size);
+		predecessorBuffer.put(predecessors, firstRow * size, (lastRow - firstRow) * size);
+	}
+}
@@ -26,6 +26,9 @@ public abstract class Event implements Comparable<Event> {
 	 */
     final long id;
 
+	// Position of the event in the IndexedEventQueue holding it; -1 if the event is not queued.
+	int queuePosition = -1;
+
 	/**
 	 * Constructor for class Event
 	 *
@@ -61,7 +64,7 @@ public abstract class Event implements Comparable<Event> {
 	}
 
 	/**
-	 * To be used by the PriorityQueue to order the Events
+	 * To be used by the event queue to order the Events
 	 *
 	 * @param o the event being compared to this one
 	 * @return -1, 0, or 1 according to whether the value of expression is
@@ -84,11 +87,18 @@ public abstract class Event implements Comparable<Event> {
 				return 0;
 			}
 		} else {
-			if (this instanceof AgentEvent) { // if not, agent should be processed first
-				return -1;
-			} else {
-				return 1;
-			}
+			// if not, agent should be processed first and batch dispatch last
+			return Integer.compare(typeOrder(this), typeOrder(o));
+		}
+	}
+
+	private static int typeOrder(Event event) {
+		if (event instanceof AgentEvent) {
+			return 0;
+		} else if (event instanceof BatchDispatchEvent) {
+			return 2;
+		} else {
+			return 1;
 		}
 	}
 
@@ -0,0 +1,55 @@
+package COMSETsystem;
+
+/**
+ * An EventQueue holds the pending events of a simulation and hands them out in the order defined by
+ * Event.compareTo, i.e., by trigger time with agent events before resource events and ties broken by
+ * event id. All implementations poll the same events in the same order.
+ * <p>
+ * An event can be in at most one EventQueue at a time, and its time must not change while it is queued.
+ */
+public interface EventQueue extends Iterable<Event> {
+
+	/**
+	 * @return the number of events in the queue
+	 */
+	int size();
+
+	/**
+	 * @return true if the queue is empty
+	 */
+	boolean isEmpty();
+
+	/**
+	 * @param event an event
+	 * @return true if the event is in this queue
+	 */
+	boolean contains(Event event);
+
+	/**
+	 * Add an event to the queue.
+	 *
+	 * @param event the event to add
+	 * @throws IllegalArgumentException if the event is already in the queue
+	 */
+	void add(Event event) throws IllegalArgumentException;
+
+	/**
+	 * @return the first event without removing it; null if the queue is empty
+	 */
+	Event peek();
+
+	/**
+	 * Remove the first event.
+	 *
+	 * @return the removed event; null if the queue is empty
+	 */
+	Event poll();
+
+	/**
+	 * Remove an event from the queue.
+	 *
+	 * @param event the event to remove
+	 * @return true if the event was in the queue
+	 */
+	boolean remove(Event event);
+}
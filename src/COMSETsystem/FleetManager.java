@@ -1,6 +1,9 @@
 package COMSETsystem;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 public abstract class FleetManager {
 
@@ -9,6 +12,14 @@ public abstract class FleetManager {
     // Should not be accessible by subclasses.
     TrafficPattern trafficPattern;
 
+    // The window over which available resources are collected and assigned together; 0 if batch dispatch is
+    // disabled.
+    long batchDispatchWindow = 0;
+
+    // The random generator for the decisions of the fleet manager, seeded by the simulation so that runs are
+    // reproducible.
+    private SplittableRandom random = new SplittableRandom();
+
     public enum ResourceState {
         AVAILABLE,
         PICKED_UP,
@@ -30,10 +41,50 @@ public abstract class FleetManager {
         this.map = map;
     }
 
+    /**
+     * The simulation calls onBatchDispatch at the end of every batch dispatch window when batch dispatch is
+     * enabled (see comset.batch_dispatch_window), after the resources that became available up to the current
+     * time have been announced with onResourceAvailabilityChange. A fleet manager may hold back these resources
+     * and assign them here all at once. The default implementation assigns nothing.
+     * @param time the simulation time
+     * @return the assignments to make, each created with AgentAction.assignTo
+     */
+    public List<AgentAction> onBatchDispatch(long time) {
+        return Collections.emptyList();
+    }
+
     void setTrafficPattern(TrafficPattern trafficPattern) {
         this.trafficPattern = trafficPattern;
     }
 
+    void setBatchDispatchWindow(long batchDispatchWindow) {
+        this.batchDispatchWindow = batchDispatchWindow;
+    }
+
+    void setRandomSeed(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    // The random generator to make randomized decisions with; seeded from comset.agent_placement_seed.
+    protected SplittableRandom random() {
+        return random;
+    }
+
+    // The travel time from one location to another departing at a given time, with the traffic pattern of the
+    // simulation applied. Unlike map.travelTimeBetween, it matches the time agents actually take.
+    public long travelTimeBetween(LocationOnRoad source, LocationOnRoad destination, long departureTime) {
+        if (trafficPattern == null) {
+            return map.travelTimeBetween(source, destination);
+        }
+        return map.travelTimeBetween(source, destination, departureTime, trafficPattern);
+    }
+
+    // The largest speed factor of the traffic pattern of the simulation; no agent travels faster than the speed
+    // limit of a road multiplied by it.
+    double maxSpeedFactor() {
+        return trafficPattern == null ? 1.0 : trafficPattern.maxSpeedFactor();
+    }
+
     public LocationOnRoad getCurrentLocation(long lastAppearTime, LocationOnRoad lastLocation,
                                              long currentTime) {
         long elapseTime = currentTime - lastAppearTime;
@@ -0,0 +1,140 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * IndexedEventQueue is a binary min-heap of events ordered by Event.compareTo, i.e., by trigger time with
+ * agent events before resource events and ties broken by event id. Every event stores its own position in
+ * the heap, so that contains is O(1) and remove is O(log n) instead of the linear scans of a
+ * java.util.PriorityQueue. The polling order is the same as that of a PriorityQueue holding the same events.
+ * <p>
+ * An event can be in at most one IndexedEventQueue at a time. An IndexedEventQueue is not thread-safe.
+ */
+public class IndexedEventQueue implements EventQueue {
+
+	private Event[] heap = new Event[16];
+
+	private int size = 0;
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public boolean contains(Event event) {
+		int i = event.queuePosition;
+		return i >= 0 && i < size && heap[i] == event;
+	}
+
+	@Override
+	public void add(Event event) throws IllegalArgumentException {
+		if (contains(event)) {
+			throw new IllegalArgumentException("event " + event.id + " is already in the queue");
+		}
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, size * 2);
+		}
+		heap[size] = event;
+		siftUp(size++);
+	}
+
+	@Override
+	public Event peek() {
+		return size == 0 ? null : heap[0];
+	}
+
+	@Override
+	public Event poll() {
+		if (size == 0) {
+			return null;
+		}
+		Event first = heap[0];
+		removeAt(0);
+		return first;
+	}
+
+	@Override
+	public boolean remove(Event event) {
+		if (!contains(event)) {
+			return false;
+		}
+		removeAt(event.queuePosition);
+		return true;
+	}
+
+	/**
+	 * Iterate over the events in no particular order. The queue must not be modified during the iteration.
+	 */
+	@Override
+	public Iterator<Event> iterator() {
+		return new Iterator<Event>() {
+			int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public Event next() {
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				return heap[next++];
+			}
+		};
+	}
+
+	private void removeAt(int i) {
+		heap[i].queuePosition = -1;
+		Event last = heap[--size];
+		heap[size] = null;
+		if (i < size) {
+			heap[i] = last;
+			siftDown(i);
+			if (heap[i] == last) {
+				siftUp(i);
+			}
+		}
+	}
+
+	private void siftUp(int i) {
+		Event event = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (event.compareTo(heap[parent]) >= 0) break;
+			place(heap[parent], i);
+			i = parent;
+		}
+		place(event, i);
+	}
+
+	private void siftDown(int i) {
+		Event event = heap[i];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if (right < size && heap[right].compareTo(heap[child]) < 0) {
+				child = right;
+			}
+			if (heap[child].compareTo(event) >= 0) break;
+			place(heap[child], i);
+			i = child;
+		}
+		place(event, i);
+	}
+
+	private void place(Event event, int i) {
+		heap[i] = event;
+		event.queuePosition = i;
+	}
+}
@@ -0,0 +1,203 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * IndexedMinHeap is a binary min-heap over int ids in the range [0, capacity) with a double key per id.
+ * Every id remembers its position in the heap, so that contains and key are O(1) while insert, poll and
+ * decreaseKey are O(log n). Ties on key are broken by the smaller id, which makes the polling order
+ * deterministic.
+ * <p>
+ * Ids are inserted lazily, i.e., only when they are first reached, so a search touching a small part of a
+ * large graph only pays for what it touches. clear() takes time proportional to the current size, which
+ * allows reusing a heap across many searches without reallocating.
+ * <p>
+ * An IndexedMinHeap is not thread-safe.
+ */
+public class IndexedMinHeap {
+
+	// heap[i] is the id at position i of the heap
+	private final int[] heap;
+
+	// position[id] is the position of id in the heap; -1 if the id is not in the heap
+	private final int[] position;
+
+	// key[id] is the key of id; only meaningful while the id is in the heap
+	private final double[] key;
+
+	private int size = 0;
+
+	/**
+	 * Constructor of IndexedMinHeap.
+	 *
+	 * @param capacity the number of ids; valid ids are 0 to capacity - 1
+	 */
+	public IndexedMinHeap(int capacity) {
+		heap = new int[capacity];
+		position = new int[capacity];
+		key = new double[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	/**
+	 * @return the number of ids in the heap
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the heap is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param id an id
+	 * @return true if the id is in the heap
+	 */
+	public boolean contains(int id) {
+		return position[id] >= 0;
+	}
+
+	/**
+	 * @param id an id in the heap
+	 * @return the key of the id
+	 */
+	public double key(int id) {
+		return key[id];
+	}
+
+	/**
+	 * Insert an id that is not in the heap.
+	 *
+	 * @param id the id to insert
+	 * @param k the key of the id
+	 * @throws IllegalArgumentException if the id is already in the heap
+	 */
+	public void insert(int id, double k) throws IllegalArgumentException {
+		if (position[id] >= 0) {
+			throw new IllegalArgumentException("id " + id + " is already in the heap");
+		}
+		key[id] = k;
+		position[id] = size;
+		heap[size] = id;
+		siftUp(size++);
+	}
+
+	/**
+	 * Lower the key of an id that is in the heap.
+	 *
+	 * @param id the id whose key is to be lowered
+	 * @param k the new key, which must not be greater than the current key
+	 * @throws IllegalArgumentException if the id is not in the heap or the new key is greater
+	 */
+	public void decreaseKey(int id, double k) throws IllegalArgumentException {
+		if (position[id] < 0) {
+			throw new IllegalArgumentException("id " + id + " is not in the heap");
+		}
+		if (k > key[id]) {
+			throw new IllegalArgumentException("new key " + k + " is greater than current key " + key[id]);
+		}
+		key[id] = k;
+		siftUp(position[id]);
+	}
+
+	/**
+	 * Insert an id, or lower its key if it is already in the heap with a greater key.
+	 *
+	 * @param id the id
+	 * @param k the key
+	 * @return true if the heap changed
+	 */
+	public boolean insertOrDecrease(int id, double k) {
+		if (position[id] < 0) {
+			insert(id, k);
+			return true;
+		}
+		if (k < key[id]) {
+			decreaseKey(id, k);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the id with the smallest key without removing it
+	 * @throws NoSuchElementException if the heap is empty
+	 */
+	public int peek() throws NoSuchElementException {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return heap[0];
+	}
+
+	/**
+	 * Remove the id with the smallest key.
+	 *
+	 * @return the removed id
+	 * @throws NoSuchElementException if the heap is empty
+	 */
+	public int poll() throws NoSuchElementException {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		int top = heap[0];
+		position[top] = -1;
+		if (--size > 0) {
+			heap[0] = heap[size];
+			position[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	/**
+	 * Remove all ids from the heap.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			position[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	private void siftUp(int i) {
+		int id = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!less(id, heap[parent])) break;
+			place(heap[parent], i);
+			i = parent;
+		}
+		place(id, i);
+	}
+
+	private void siftDown(int i) {
+		int id = heap[i];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if (right < size && less(heap[right], heap[child])) {
+				child = right;
+			}
+			if (!less(heap[child], id)) break;
+			place(heap[child], i);
+			i = child;
+		}
+		place(id, i);
+	}
+
+	private void place(int id, int i) {
+		heap[i] = id;
+		position[id] = i;
+	}
+
+	private boolean less(int id1, int id2) {
+		return key[id1] < key[id2] || (key[id1] == key[id2] && id1 < id2);
+	}
+}
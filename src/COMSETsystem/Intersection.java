@@ -32,6 +32,9 @@ public class Intersection implements Comparable<Intersection> {
 	// the upstream intersection, also called outgoing roads.
 	public Map<Intersection, Road> roadsMapFrom = new TreeMap<>();
 
+	// The compact road network of the map this intersection belongs to; null until the map is created.
+	RoadGraph roadGraph;
+
 	/**
 	 * Constructor of Intersection.
 	 * @param vertex the vertex at which the intersection is located
@@ -65,6 +68,9 @@ public class Intersection implements Comparable<Intersection> {
 	 * @return true if there is a road between this and i and false otherwise.
 	 */
 	public boolean isAdjacent (Intersection i) {
+		if (roadGraph != null && i.roadGraph == roadGraph) {
+			return roadGraph.adjacent(pathTableIndex, i.pathTableIndex);
+		}
 		return (roadsMapFrom.keySet().contains(i) || roadsMapTo.keySet().contains(i));
 	}
 
@@ -80,6 +86,14 @@ public class Intersection implements Comparable<Intersection> {
 		if (roadsMapFrom == null || i == null) {
 			System.out.println("here");
 		}
+		if (roadGraph != null && i != null && i.roadGraph == roadGraph) {
+			Road road = roadGraph.road(pathTableIndex, i.pathTableIndex);
+			if (road != null) {
+				return road;
+			}
+			throw new IllegalArgumentException("no road between " +
+					"this and i");
+		}
 		if (roadsMapFrom.keySet().contains(i)) {
 			return roadsMapFrom.get(i);
 		}
@@ -0,0 +1,157 @@
+package COMSETsystem;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A LazyPathTable computes the row of a source intersection, i.e., the shortest travel times and
+ * predecessors from the source to all intersections, the first time the source is queried. Rows are kept
+ * in a least-recently-used cache bounded by a memory budget, so that maps whose dense all-pair table does
+ * not fit in memory can still be simulated. Since most queries come from a small set of sources (e.g.,
+ * agents near demand hot spots), most of them are served from the cache.
+ * <p>
+ * Rows are computed outside the cache lock so that concurrent misses on different sources do not wait for
+ * each other.
+ */
+class LazyPathTable implements PathTable {
+
+	/**
+	 * A single-source shortest path search filling the row of a source.
+	 */
+	interface RowSearch {
+		/**
+		 * @param source path table index of the source intersection
+		 * @param travelTimes receives the shortest travel times from source indexed by destination
+		 * @param predecessors receives the predecessors on the shortest paths from source indexed by destination
+		 */
+		void search(int source, double[] travelTimes, int[] predecessors);
+	}
+
+	private static class Row {
+		final double[] travelTimes;
+		final int[] predecessors;
+
+		Row(int size) {
+			travelTimes = new double[size];
+			predecessors = new int[size];
+		}
+	}
+
+	private final int size;
+
+	// The maximum number of rows held by the cache.
+	private final int capacity;
+
+	private final RowSearch search;
+
+	// Rows in access order, least recently used first.
+	private final LinkedHashMap<Integer, Row> rows;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Constructor of LazyPathTable.
+	 *
+	 * @param size the number of intersections
+	 * @param memoryBudget the maximum number of bytes to be taken by cached rows; at least one row is cached
+	 * @param search the search computing a row on a cache miss; must be safe to call concurrently
+	 */
+	LazyPathTable(int size, long memoryBudget, RowSearch search) {
+		this.size = size;
+		this.capacity = (int) Math.max(1, Math.min(size, memoryBudget / rowBytes(size)));
+		this.search = search;
+		this.rows = new LinkedHashMap<Integer, Row>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Row> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * @param size the number of intersections
+	 * @return the number of bytes taken by the arrays of a row
+	 */
+	static long rowBytes(int size) {
+		return (long) Math.max(size, 1) * (Double.BYTES + Integer.BYTES);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public double travelTime(int source, int destination) {
+		return row(source).travelTimes[destination];
+	}
+
+	@Override
+	public int predecessor(int source, int destination) {
+		return row(source).predecessors[destination];
+	}
+
+	/**
+	 * Walks the predecessors of a single lookup of the row of source, rather than looking the row up once per
+	 * intersection of the path.
+	 */
+	@Override
+	public int[] path(int source, int destination) {
+		int[] predecessors = row(source).predecessors;
+		int length = 1;
+		for (int current = destination; current != source; current = predecessors[current]) {
+			if (current < 0) {
+				return null;
+			}
+			length++;
+		}
+		int[] path = new int[length];
+		for (int i = length - 1, current = destination; i >= 0; i--, current = predecessors[current]) {
+			path[i] = current;
+		}
+		return path;
+	}
+
+	/**
+	 * @return the maximum number of rows held by the cache
+	 */
+	int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of queries answered from a cached row
+	 */
+	long hits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of queries that required computing a row
+	 */
+	long misses() {
+		return misses.get();
+	}
+
+	private Row row(int source) {
+		Row row;
+		synchronized (rows) {
+			row = rows.get(source);
+		}
+		if (row != null) {
+			hits.incrementAndGet();
+			return row;
+		}
+
+		misses.incrementAndGet();
+		row = new Row(size);
+		search.search(source, row.travelTimes, row.predecessors);
+		synchronized (rows) {
+			// another thread may have computed the same row meanwhile; keep the cached one
+			Row cached = rows.putIfAbsent(source, row);
+			return cached != null ? cached : row;
+		}
+	}
+}
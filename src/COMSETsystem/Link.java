@@ -23,6 +23,8 @@ public class Link implements Comparable<Link> {
 	public Road road;
 	// the amount of time it takes to travel from the start of the road to the start vertex of this link 
 	public double beginTime = -1;
+	// the distance from the start of the road to the start vertex of this link
+	public double beginDistance = -1;
 
 	// min and max coordinates of the link
 	public double minX;
@@ -72,6 +74,7 @@ public class Link implements Comparable<Link> {
 		this.speed = aLink.speed;
 		this.travelTime = aLink.travelTime;
 		this.beginTime = aLink.beginTime;
+		this.beginDistance = aLink.beginDistance;
 		this.road = null;
 		minX = aLink.minX;
 		minY = aLink.minY;
@@ -119,30 +122,35 @@ public class Link implements Comparable<Link> {
 	 * @return distance square
 	 */
 	public double distanceSq(Point2D p) {
-		double distSq;
-		double x1 = this.from.getX();
-		double y1 = this.from.getY();
-		double x2 = this.to.getX();
-		double y2 = this.to.getY();
-		double x = p.getX();
-		double y = p.getY();
+		return segmentDistanceSq(this.from.getX(), this.from.getY(), this.to.getX(), this.to.getY(), p.getX(), p.getY());
+	}
+
+	/**
+	 * squared distance between a point and a line segment
+	 * @param x1 x of the start of the segment
+	 * @param y1 y of the start of the segment
+	 * @param x2 x of the end of the segment
+	 * @param y2 y of the end of the segment
+	 * @param x x of the point
+	 * @param y y of the point
+	 * @return distance square
+	 */
+	public static double segmentDistanceSq(double x1, double y1, double x2, double y2, double x, double y) {
 		double length = (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
 
 		if (length == 0.0) {
-			distSq = distanceSq(x1, y1, x, y);
+			return pointDistanceSq(x1, y1, x, y);
+		}
+		double t = ((x - x1) * (x2 - x1) + (y - y1) * (y2 - y1)) / length;
+		if (t < 0.0) {
+			return pointDistanceSq(x1, y1, x, y);
+		} else if (t > 1.0) {
+			return pointDistanceSq(x2, y2, x, y);
 		} else {
-			double t = ((x - x1) * (x2 - x1) + (y - y1) * (y2 - y1)) / length;
-			if (t < 0.0) {
-				distSq = distanceSq(x1, y1, x, y);
-			} else if (t > 1.0) {
-				distSq = distanceSq(x2, y2, x, y);
-			} else {
-				double proj_x = x1 + t * (x2 - x1);
-				double proj_y = y1 + t * (y2 - y1);
-				distSq = distanceSq(proj_x, proj_y, x, y);
-			}
+			double proj_x = x1 + t * (x2 - x1);
+			double proj_y = y1 + t * (y2 - y1);
+			return pointDistanceSq(proj_x, proj_y, x, y);
 		}
-		return distSq;
 	}
 	
 	/**
@@ -154,6 +162,10 @@ public class Link implements Comparable<Link> {
 	 * @return
 	 */
 	public double distanceSq(double x1, double y1, double x2, double y2) {
+		return pointDistanceSq(x1, y1, x2, y2);
+	}
+
+	private static double pointDistanceSq(double x1, double y1, double x2, double y2) {
 		return (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
 	}
 }
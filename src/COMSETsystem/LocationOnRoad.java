@@ -27,6 +27,10 @@ public class LocationOnRoad {
         return displacement;
     }
 
+    public double getDistanceFromStartIntersection() {
+        return distanceFromStartIntersection;
+    }
+
     public long getStaticTravelTimeOnRoad() {
         return Math.round(distanceFromStartIntersection/road.speed);
     }
@@ -0,0 +1,79 @@
+package COMSETsystem;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A MappedPathTable serves shortest travel times and predecessors straight from a path table file mapped
+ * into memory (see PathTableCache for the file layout). Since a single mapping cannot exceed 2GB, the
+ * travel time and predecessor sections are each mapped as a sequence of segments holding a whole number
+ * of rows.
+ */
+class MappedPathTable implements PathTable {
+
+	// The maximum number of bytes of a mapped segment.
+	private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+	private final int size;
+
+	// The number of rows held by each segment (the last segment may hold fewer).
+	private final int rowsPerSegment;
+
+	private final DoubleBuffer[] travelTimeSegments;
+	private final IntBuffer[] predecessorSegments;
+
+	/**
+	 * Constructor of MappedPathTable.
+	 *
+	 * @param channel the channel of the path table file
+	 * @param travelTimeOffset the file offset of the travel time section
+	 * @param predecessorOffset the file offset of the predecessor section
+	 * @param size the number of intersections
+	 * @throws IOException if the file cannot be mapped
+	 */
+	MappedPathTable(FileChannel channel, long travelTimeOffset, long predecessorOffset, int size)
+			throws IOException {
+		this.size = size;
+		this.rowsPerSegment = rowsPerSegment(size);
+		int segments = size == 0 ? 0 : (size + rowsPerSegment - 1) / rowsPerSegment;
+		travelTimeSegments = new DoubleBuffer[segments];
+		predecessorSegments = new IntBuffer[segments];
+		for (int i = 0; i < segments; i++) {
+			int rows = Math.min(rowsPerSegment, size - i * rowsPerSegment);
+			long firstEntry = (long) i * rowsPerSegment * size;
+			long entries = (long) rows * size;
+			travelTimeSegments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+					travelTimeOffset + firstEntry * Double.BYTES, entries * Double.BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+			predecessorSegments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+					predecessorOffset + firstEntry * Integer.BYTES, entries * Integer.BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		}
+	}
+
+	/**
+	 * @param size the number of intersections
+	 * @return the number of rows held by each mapped segment
+	 */
+	static int rowsPerSegment(int size) {
+		return (int) Math.max(1, MAX_SEGMENT_BYTES / ((long) Math.max(size, 1) * Double.BYTES));
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public double travelTime(int source, int destination) {
+		return travelTimeSegments[source / rowsPerSegment].get((source % rowsPerSegment) * size + destination);
+	}
+
+	@Override
+	public int predecessor(int source, int destination) {
+		return predecessorSegments[source / rowsPerSegment].get((source % rowsPerSegment) * size + destination);
+	}
+}
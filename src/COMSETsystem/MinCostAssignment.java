@@ -0,0 +1,134 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * MinCostAssignment solves the assignment problem on a sparse cost matrix: every row (e.g., a resource) may
+ * be assigned to one of its candidate columns (e.g., the agents that can reach it in time), and every column
+ * to at most one row. Among the assignments of the largest number of rows, the one with the smallest total
+ * cost is found.
+ * <p>
+ * This is the Hungarian method in its successive shortest path form: rows are added one by one, each along a
+ * shortest augmenting path found by Dijkstra's algorithm over reduced costs, and node potentials keep the
+ * reduced costs non-negative. Only the candidate pairs are visited, so solving takes O(r * e log c) time for
+ * r rows, c columns and e candidate pairs, instead of the O(r^2 c) of the dense method.
+ * <p>
+ * Costs are non-negative integers, e.g., travel times in simulation time units; they are kept exact as long as
+ * the sum of all costs is below 2^52.
+ */
+public class MinCostAssignment {
+
+	private MinCostAssignment() {
+	}
+
+	/**
+	 * Solve an assignment problem.
+	 *
+	 * @param columns the number of columns
+	 * @param rowColumns rowColumns[i] are the candidate columns of row i
+	 * @param rowCosts rowCosts[i][k] is the cost of assigning row i to column rowColumns[i][k]
+	 * @return for every row the column it is assigned to; -1 if it is not assigned
+	 */
+	public static int[] solve(int columns, int[][] rowColumns, long[][] rowCosts) {
+		int rows = rowColumns.length;
+
+		// Every row also has a private dummy column that stands for leaving the row unassigned. Its cost is
+		// above the total of all real costs, so that assigning one more row always lowers the total cost.
+		long unassignedCost = 1;
+		for (long[] costs : rowCosts) {
+			long max = 0;
+			for (long cost : costs) {
+				if (cost < 0) {
+					throw new IllegalArgumentException("costs must not be negative");
+				}
+				max = Math.max(max, cost);
+			}
+			unassignedCost += max;
+		}
+		int nodes = columns + rows;
+
+		long[] rowPotential = new long[rows];
+		long[] columnPotential = new long[nodes];
+		int[] columnOfRow = new int[rows];
+		int[] rowOfColumn = new int[nodes];
+		Arrays.fill(rowOfColumn, -1);
+
+		// the state of the search for one augmenting path
+		IndexedMinHeap heap = new IndexedMinHeap(nodes);
+		long[] rowDistance = new long[rows];
+		long[] columnDistance = new long[nodes];
+		int[] previousRow = new int[nodes];
+		boolean[] settled = new boolean[nodes];
+		int[] settledColumns = new int[nodes];
+		int[] reachedRows = new int[rows];
+
+		for (int root = 0; root < rows; root++) {
+			int settledCount = 0;
+			int reachedCount = 0;
+			int row = root;
+			rowDistance[row] = 0;
+			reachedRows[reachedCount++] = row;
+			int freeColumn;
+			long pathLength;
+			while (true) {
+				// relax the candidate pairs of the reached row
+				long base = rowDistance[row] - rowPotential[row];
+				for (int k = 0; k <= rowColumns[row].length; k++) {
+					int column = k < rowColumns[row].length ? rowColumns[row][k] : columns + row;
+					long cost = k < rowColumns[row].length ? rowCosts[row][k] : unassignedCost;
+					if (settled[column]) {
+						continue;
+					}
+					long distance = base + cost - columnPotential[column];
+					if (heap.insertOrDecrease(column, distance)) {
+						columnDistance[column] = distance;
+						previousRow[column] = row;
+					}
+				}
+				int column = heap.poll();
+				settled[column] = true;
+				settledColumns[settledCount++] = column;
+				if (rowOfColumn[column] < 0) {
+					freeColumn = column;
+					pathLength = columnDistance[column];
+					break;
+				}
+				// continue from the row holding the column, which costs nothing more
+				row = rowOfColumn[column];
+				rowDistance[row] = columnDistance[column];
+				reachedRows[reachedCount++] = row;
+			}
+
+			// update the potentials so that the reduced costs stay non-negative and are zero along the path
+			for (int i = 0; i < reachedCount; i++) {
+				rowPotential[reachedRows[i]] += pathLength - rowDistance[reachedRows[i]];
+			}
+			for (int i = 0; i < settledCount; i++) {
+				int column = settledColumns[i];
+				columnPotential[column] -= pathLength - columnDistance[column];
+				settled[column] = false;
+			}
+			heap.clear();
+
+			// flip the augmenting path
+			int column = freeColumn;
+			while (true) {
+				row = previousRow[column];
+				int next = row == root ? -1 : columnOfRow[row];
+				columnOfRow[row] = column;
+				rowOfColumn[column] = row;
+				if (next < 0) {
+					break;
+				}
+				column = next;
+			}
+		}
+
+		for (int row = 0; row < rows; row++) {
+			if (columnOfRow[row] >= columns) {
+				columnOfRow[row] = -1;
+			}
+		}
+		return columnOfRow;
+	}
+}
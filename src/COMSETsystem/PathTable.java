@@ -0,0 +1,53 @@
+package COMSETsystem;
+
+/**
+ * A PathTable answers shortest travel time queries between pairs of intersections together with the
+ * predecessor of the destination on the shortest path, from which the full path can be reconstructed.
+ * Implementations that do not store predecessors (e.g., ContractionHierarchy) override path instead.
+ * Intersections are identified by their path table indices (see Intersection.pathTableIndex).
+ * <p>
+ * Implementations must be safe for concurrent reads.
+ */
+interface PathTable {
+
+	/**
+	 * @return the number of intersections covered by the table
+	 */
+	int size();
+
+	/**
+	 * @param source path table index of the source intersection
+	 * @param destination path table index of the destination intersection
+	 * @return the shortest travel time in seconds from source to destination; Double.MAX_VALUE if unreachable
+	 */
+	double travelTime(int source, int destination);
+
+	/**
+	 * @param source path table index of the source intersection
+	 * @param destination path table index of the destination intersection
+	 * @return path table index of the intersection preceding destination on the shortest path from source;
+	 * -1 if unreachable
+	 */
+	int predecessor(int source, int destination);
+
+	/**
+	 * @param source path table index of the source intersection
+	 * @param destination path table index of the destination intersection
+	 * @return path table indices of the intersections on the shortest path from source to destination,
+	 * both included; null if unreachable
+	 */
+	default int[] path(int source, int destination) {
+		int length = 1;
+		for (int current = destination; current != source; current = predecessor(source, current)) {
+			if (current < 0) {
+				return null;
+			}
+			length++;
+		}
+		int[] path = new int[length];
+		for (int i = length - 1, current = destination; i >= 0; i--, current = predecessor(source, current)) {
+			path[i] = current;
+		}
+		return path;
+	}
+}
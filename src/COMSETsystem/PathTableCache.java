@@ -0,0 +1,177 @@
+package COMSETsystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * The PathTableCache persists the all-pair path table of a map on disk so that later runs on the same
+ * map can skip the all-pair shortest path computation and serve queries from the file mapped into memory.
+ * <p>
+ * A cache is identified by a SHA-256 digest of the contents of the input files the map is created from
+ * (i.e., the map JSON file and the bounding polygon KML file). The digest determines the name of the
+ * cache file and is also stored in its header, so that a cache created from different inputs is never used.
+ * <p>
+ * The file layout is, in little-endian byte order:
+ * <pre>
+ *   int    magic number
+ *   int    format version
+ *   int    number of intersections n
+ *   byte[] SHA-256 digest of the inputs (32 bytes)
+ *   ...    padding up to HEADER_BYTES
+ *   double travel times, n * n entries in row-major order
+ *   int    predecessors, n * n entries in row-major order
+ * </pre>
+ */
+class PathTableCache {
+
+	private static final int MAGIC = 0x434D5054; // "CMPT"
+	private static final int VERSION = 1;
+	private static final int DIGEST_BYTES = 32;
+	private static final int HEADER_BYTES = 64;
+
+	// Full path of the cache file.
+	private final Path file;
+
+	// Digest of the inputs.
+	private final byte[] digest;
+
+	/**
+	 * Constructor of PathTableCache.
+	 *
+	 * @param directory the directory holding cache files; created if it does not exist
+	 * @param inputFiles the files the map is created from
+	 * @throws IOException if an input file cannot be read
+	 */
+	PathTableCache(String directory, String... inputFiles) throws IOException {
+		this.digest = digestOf(inputFiles);
+		StringBuilder name = new StringBuilder("pathtable-");
+		for (int i = 0; i < 8; i++) {
+			name.append(String.format("%02x", digest[i]));
+		}
+		name.append(".bin");
+		this.file = Paths.get(directory, name.toString());
+	}
+
+	/**
+	 * @return full path of the cache file
+	 */
+	Path file() {
+		return file;
+	}
+
+	/**
+	 * Open the cached path table.
+	 *
+	 * @param size the number of intersections of the map
+	 * @return the path table mapped into memory; null if there is no valid cache for the inputs
+	 */
+	PathTable load(int size) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long travelTimeBytes = (long) size * size * Double.BYTES;
+			long predecessorBytes = (long) size * size * Integer.BYTES;
+			if (channel.size() != HEADER_BYTES + travelTimeBytes + predecessorBytes) {
+				return null;
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			channel.read(header, 0);
+			header.flip();
+			byte[] storedDigest = new byte[DIGEST_BYTES];
+			if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != size) {
+				return null;
+			}
+			header.get(storedDigest);
+			if (!Arrays.equals(storedDigest, digest)) {
+				return null;
+			}
+			// The mapping stays valid after the channel is closed.
+			return new MappedPathTable(channel, HEADER_BYTES, HEADER_BYTES + travelTimeBytes, size);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Write a path table to the cache file. The table is first written to a temporary file which then
+	 * replaces the cache file, so that an interrupted write never leaves a truncated cache behind.
+	 *
+	 * @param table the path table to write
+	 * @throws IOException if the cache file cannot be written
+	 */
+	void store(DensePathTable table) throws IOException {
+		int size = table.size();
+		long travelTimeBytes = (long) size * size * Double.BYTES;
+		long predecessorBytes = (long) size * size * Integer.BYTES;
+		int rowsPerSegment = MappedPathTable.rowsPerSegment(size);
+
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), "pathtable-", ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(MAGIC).putInt(VERSION).putInt(size).put(digest);
+				header.rewind();
+				channel.write(header, 0);
+
+				for (int firstRow = 0; firstRow < size; firstRow += rowsPerSegment) {
+					int lastRow = Math.min(size, firstRow + rowsPerSegment);
+					long firstEntry = (long) firstRow * size;
+					long entries = (long) (lastRow - firstRow) * size;
+					MappedByteBuffer travelTimes = channel.map(FileChannel.MapMode.READ_WRITE,
+							HEADER_BYTES + firstEntry * Double.BYTES, entries * Double.BYTES);
+					MappedByteBuffer predecessors = channel.map(FileChannel.MapMode.READ_WRITE,
+							HEADER_BYTES + travelTimeBytes + firstEntry * Integer.BYTES, entries * Integer.BYTES);
+					table.copyRows(firstRow, lastRow,
+							travelTimes.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer(),
+							predecessors.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+					travelTimes.force();
+					predecessors.force();
+				}
+				assert channel.size() == HEADER_BYTES + travelTimeBytes + predecessorBytes;
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Compute the SHA-256 digest of the contents of a sequence of files and the format version.
+	 */
+	private static byte[] digestOf(String... inputFiles) throws IOException {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		md.update(ByteBuffer.allocate(Integer.BYTES).putInt(VERSION).array());
+		byte[] buffer = new byte[1 << 16];
+		for (String inputFile : inputFiles) {
+			// prefix each file with its length so that the digest tells where one file ends and the next begins
+			md.update(ByteBuffer.allocate(Long.BYTES).putLong(Files.size(Paths.get(inputFile))).array());
+			try (InputStream in = Files.newInputStream(Paths.get(inputFile))) {
+				int n;
+				while ((n = in.read(buffer)) > 0) {
+					md.update(buffer, 0, n);
+				}
+			}
+		}
+		return md.digest();
+	}
+}
@@ -0,0 +1,227 @@
+package COMSETsystem;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.exceptions.DistanceUndefinedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RegionIndex divides a map into the H3 cells of a given resolution that contain at least one intersection,
+ * called regions, and precomputes what fleet managers look up about them when repositioning agents: the
+ * region of every intersection, the intersections of every region, the neighbouring regions of every region
+ * and the grid distances to them. Regions are numbered densely from 0 and cells are kept as long ids, so
+ * that, once the index is built, a repositioning decision makes no H3 call and allocates no String.
+ * <p>
+ * The neighbourhoods of cells are searched on first use and cached. A RegionIndex is not thread-safe.
+ */
+public class RegionIndex {
+
+	private final H3Core h3;
+	private final int resolution;
+
+	// The cells of the regions in ascending order; region r is cells[r].
+	private final long[] cells;
+
+	// The intersections of each region, in the iteration order of the intersections of the map.
+	private final Intersection[][] regionIntersections;
+
+	// The region of each intersection, indexed by Intersection.pathTableIndex.
+	private final int[] intersectionRegions;
+
+	// The regions adjacent to each region, and the adjacent cells that are not regions.
+	private final int[][] neighbours;
+	private final long[][] absentNeighbours;
+
+	// The destination candidates of each region and of the cells that are not regions; see neighbourhood.
+	private final int[][][] regionNeighbourhoods;
+	private final Map<Long, int[][]> cellNeighbourhoods = new HashMap<>();
+
+	/**
+	 * Constructor of RegionIndex.
+	 *
+	 * @param h3 the H3 library
+	 * @param resolution the H3 resolution of the regions
+	 * @param map the map to divide into regions
+	 */
+	public RegionIndex(H3Core h3, int resolution, CityMap map) {
+		this.h3 = h3;
+		this.resolution = resolution;
+
+		Map<Long, List<Intersection>> cellIntersections = new HashMap<>();
+		int maxIndex = -1;
+		for (Intersection intersection : map.intersections().values()) {
+			long cell = h3.geoToH3(intersection.latitude, intersection.longitude, resolution);
+			cellIntersections.computeIfAbsent(cell, c -> new ArrayList<>()).add(intersection);
+			maxIndex = Math.max(maxIndex, intersection.pathTableIndex);
+		}
+		cells = new long[cellIntersections.size()];
+		int count = 0;
+		for (long cell : cellIntersections.keySet()) {
+			cells[count++] = cell;
+		}
+		Arrays.sort(cells);
+
+		regionIntersections = new Intersection[cells.length][];
+		intersectionRegions = new int[maxIndex + 1];
+		Arrays.fill(intersectionRegions, -1);
+		for (int region = 0; region < cells.length; region++) {
+			List<Intersection> intersections = cellIntersections.get(cells[region]);
+			regionIntersections[region] = intersections.toArray(new Intersection[0]);
+			for (Intersection intersection : intersections) {
+				intersectionRegions[intersection.pathTableIndex] = region;
+			}
+		}
+
+		neighbours = new int[cells.length][];
+		absentNeighbours = new long[cells.length][];
+		for (int region = 0; region < cells.length; region++) {
+			List<Long> ring = h3.kRing(cells[region], 1);
+			int[] found = new int[ring.size()];
+			long[] absent = new long[ring.size()];
+			int foundCount = 0;
+			int absentCount = 0;
+			for (long cell : ring) {
+				if (cell == cells[region]) {
+					continue;
+				}
+				int neighbour = regionOf(cell);
+				if (neighbour >= 0) {
+					found[foundCount++] = neighbour;
+				} else {
+					absent[absentCount++] = cell;
+				}
+			}
+			neighbours[region] = Arrays.copyOf(found, foundCount);
+			absentNeighbours[region] = Arrays.copyOf(absent, absentCount);
+		}
+
+		regionNeighbourhoods = new int[cells.length][][];
+	}
+
+	public int resolution() {
+		return resolution;
+	}
+
+	/**
+	 * @return the number of regions
+	 */
+	public int regionCount() {
+		return cells.length;
+	}
+
+	/**
+	 * @return the H3 cell of a region
+	 */
+	public long cell(int region) {
+		return cells[region];
+	}
+
+	/**
+	 * @return the region of a cell; -1 if the cell contains no intersection
+	 */
+	public int regionOf(long cell) {
+		int region = Arrays.binarySearch(cells, cell);
+		return region >= 0 ? region : -1;
+	}
+
+	/**
+	 * @return the region of an intersection of the map; -1 if the intersection is not one the index was built from
+	 */
+	public int regionOf(Intersection intersection) {
+		int index = intersection.pathTableIndex;
+		return index >= 0 && index < intersectionRegions.length ? intersectionRegions[index] : -1;
+	}
+
+	/**
+	 * Compute the cell of a location. Unlike the other methods, this calls the H3 library.
+	 *
+	 * @return the cell at the given resolution containing the location
+	 */
+	public long cellOf(double latitude, double longitude) {
+		return h3.geoToH3(latitude, longitude, resolution);
+	}
+
+	/**
+	 * @return the intersections of a region; must not be modified
+	 */
+	public Intersection[] intersections(int region) {
+		return regionIntersections[region];
+	}
+
+	/**
+	 * @return the regions adjacent to a region, i.e., at grid distance 1; must not be modified
+	 */
+	public int[] neighbours(int region) {
+		return neighbours[region];
+	}
+
+	/**
+	 * @return the cells adjacent to a region that contain no intersection; must not be modified
+	 */
+	public long[] absentNeighbours(int region) {
+		return absentNeighbours[region];
+	}
+
+	/**
+	 * The regions to which an agent in a cell may be sent: the regions adjacent to the cell if it is a region
+	 * that has any, otherwise the regions other than the cell within the smallest of the rings of radius 2, 6,
+	 * 18, ... around the cell that contains any. The grid distances to the regions are computed on first use
+	 * and cached with them.
+	 *
+	 * @return the regions, and the grid distances from the cell to them in the same order; must not be modified
+	 */
+	public int[][] neighbourhood(long cell) {
+		int region = regionOf(cell);
+		if (region < 0) {
+			return cellNeighbourhoods.computeIfAbsent(cell, this::searchNeighbourhood);
+		}
+		if (regionNeighbourhoods[region] == null) {
+			regionNeighbourhoods[region] = searchNeighbourhood(cell);
+		}
+		return regionNeighbourhoods[region];
+	}
+
+	private int[][] searchNeighbourhood(long origin) {
+		int originRegion = regionOf(origin);
+		if (originRegion >= 0 && neighbours[originRegion].length > 0) {
+			int[] adjacent = neighbours[originRegion];
+			int[] distances = new int[adjacent.length];
+			for (int i = 0; i < adjacent.length; i++) {
+				distances[i] = distance(origin, cells[adjacent[i]]);
+			}
+			return new int[][] {adjacent, distances};
+		}
+		int radius = 2;
+		while (true) {
+			List<Long> ring = h3.kRing(origin, radius);
+			int[] found = new int[ring.size()];
+			int[] distances = new int[ring.size()];
+			int count = 0;
+			for (long cell : ring) {
+				int region = regionOf(cell);
+				if (cell == origin || region < 0) {
+					continue;
+				}
+				found[count] = region;
+				distances[count++] = distance(origin, cell);
+			}
+			if (count > 0 || cells.length == 0) {
+				return new int[][] {Arrays.copyOf(found, count), Arrays.copyOf(distances, count)};
+			}
+			radius += 2 * radius;
+		}
+	}
+
+	private int distance(long from, long to) {
+		try {
+			return h3.h3Distance(from, to);
+		} catch (DistanceUndefinedException e) {
+			e.printStackTrace();
+			return 1;
+		}
+	}
+}
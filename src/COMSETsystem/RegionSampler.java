@@ -0,0 +1,101 @@
+package COMSETsystem;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * RegionSampler samples the region to which an agent is sent to look for resources. The candidates are the
+ * neighbourhood of the cell of the agent (see RegionIndex.neighbourhood), and a candidate is chosen with
+ * probability proportional to its weight divided by its grid distance to the cell plus one.
+ * <p>
+ * Region weights may vary over time buckets, e.g., the time intervals of a prediction. For each source cell an
+ * alias table is built on first use and kept until a sample is asked for another bucket or the weights are
+ * invalidated; it is then rebuilt in place. Sampling is thus done in constant time and without allocation,
+ * and is reproducible for a seeded random generator. A RegionSampler is not thread-safe.
+ */
+public class RegionSampler {
+
+	/**
+	 * The weights of the regions.
+	 */
+	public interface RegionWeights {
+		/**
+		 * @return the non-negative weight of a region in a time bucket
+		 */
+		double weight(int region, int bucket);
+	}
+
+	private static class Entry {
+		final int[][] neighbourhood;
+		final AliasTable table = new AliasTable();
+		int bucket;
+		int version = -1;
+
+		Entry(int[][] neighbourhood) {
+			this.neighbourhood = neighbourhood;
+		}
+	}
+
+	private final RegionIndex regions;
+	private final RegionWeights weights;
+
+	private final Entry[] regionEntries;
+	private final Map<Long, Entry> cellEntries = new HashMap<>();
+
+	// Incremented whenever the weights change, so that every table is rebuilt on its next use.
+	private int version = 0;
+
+	private double[] candidateWeights = new double[16];
+
+	public RegionSampler(RegionIndex regions, RegionWeights weights) {
+		this.regions = regions;
+		this.weights = weights;
+		this.regionEntries = new Entry[regions.regionCount()];
+	}
+
+	/**
+	 * Sample a destination region for an agent.
+	 *
+	 * @param cell the H3 cell of the agent
+	 * @param bucket the time bucket of the weights to use
+	 * @param random the random generator to sample with
+	 * @return the sampled region; -1 if all candidates have zero weight
+	 */
+	public int sample(long cell, int bucket, SplittableRandom random) {
+		Entry entry = entry(cell);
+		if (entry.version != version || entry.bucket != bucket) {
+			int[] candidates = entry.neighbourhood[0];
+			int[] distances = entry.neighbourhood[1];
+			if (candidateWeights.length < candidates.length) {
+				candidateWeights = new double[candidates.length];
+			}
+			for (int i = 0; i < candidates.length; i++) {
+				candidateWeights[i] = weights.weight(candidates[i], bucket) / (distances[i] + 1);
+			}
+			entry.table.build(candidateWeights, candidates.length);
+			entry.bucket = bucket;
+			entry.version = version;
+		}
+		int sampled = entry.table.sample(random);
+		return sampled < 0 ? -1 : entry.neighbourhood[0][sampled];
+	}
+
+	/**
+	 * Signal that the region weights have changed.
+	 */
+	public void invalidate() {
+		version++;
+	}
+
+	private Entry entry(long cell) {
+		int region = regions.regionOf(cell);
+		if (region < 0) {
+			return cellEntries.computeIfAbsent(cell, c -> new Entry(regions.neighbourhood(c)));
+		}
+		if (regionEntries[region] == null) {
+			regionEntries[region] = new Entry(regions.neighbourhood(cell));
+		}
+		return regionEntries[region];
+	}
+}
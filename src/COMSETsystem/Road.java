@@ -65,6 +65,7 @@ public class Road implements Comparable<Road> {
 		links.add(link);
 		link.road = this;
 		link.beginTime = this.travelTime;
+		link.beginDistance = this.length;
 		this.length += link.length;
 		this.travelTime += link.travelTime;
 	}
@@ -0,0 +1,106 @@
+package COMSETsystem;
+
+/**
+ * The RoadGraph is a compact representation of the road network of a CityMap in compressed sparse row
+ * form. Intersections are identified by their path table indices. The outgoing roads of intersection i
+ * occupy positions outOffsets[i] to outOffsets[i + 1] - 1 of the out arrays, which hold the path table
+ * index of the end intersection, the travel time and the Road object of each road; the incoming roads
+ * are laid out the same way in the in arrays.
+ * <p>
+ * Searches over the road network iterate these primitive arrays instead of the per-intersection maps.
+ * The RoadGraph is built once when the map is created and never changes afterwards.
+ */
+class RoadGraph {
+
+	// outgoing roads grouped by start intersection
+	final int[] outOffsets;
+	final int[] outTargets;
+	final double[] outTravelTimes;
+	final Road[] outRoads;
+
+	// incoming roads grouped by end intersection
+	final int[] inOffsets;
+	final int[] inSources;
+	final Road[] inRoads;
+
+	/**
+	 * Constructor of RoadGraph.
+	 *
+	 * @param intersectionsByPathTableIndex the intersections of the map indexed by their path table indices
+	 */
+	RoadGraph(Intersection[] intersectionsByPathTableIndex) {
+		int n = intersectionsByPathTableIndex.length;
+		outOffsets = new int[n + 1];
+		inOffsets = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			outOffsets[i + 1] = outOffsets[i] + intersectionsByPathTableIndex[i].roadsMapFrom.size();
+			inOffsets[i + 1] = inOffsets[i] + intersectionsByPathTableIndex[i].roadsMapTo.size();
+		}
+
+		outTargets = new int[outOffsets[n]];
+		outTravelTimes = new double[outOffsets[n]];
+		outRoads = new Road[outOffsets[n]];
+		inSources = new int[inOffsets[n]];
+		inRoads = new Road[inOffsets[n]];
+		for (int i = 0; i < n; i++) {
+			int k = outOffsets[i];
+			for (Road road : intersectionsByPathTableIndex[i].roadsMapFrom.values()) {
+				outTargets[k] = road.to.pathTableIndex;
+				outTravelTimes[k] = road.travelTime;
+				outRoads[k] = road;
+				k++;
+			}
+			k = inOffsets[i];
+			for (Road road : intersectionsByPathTableIndex[i].roadsMapTo.values()) {
+				inSources[k] = road.from.pathTableIndex;
+				inRoads[k] = road;
+				k++;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of intersections
+	 */
+	int size() {
+		return outOffsets.length - 1;
+	}
+
+	/**
+	 * @return the number of roads
+	 */
+	int roadCount() {
+		return outTargets.length;
+	}
+
+	/**
+	 * @param from path table index of the start intersection
+	 * @param to path table index of the end intersection
+	 * @return the road from one intersection to another; null if there is no such road
+	 */
+	Road road(int from, int to) {
+		for (int k = outOffsets[from]; k < outOffsets[from + 1]; k++) {
+			if (outTargets[k] == to) {
+				return outRoads[k];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param a path table index of an intersection
+	 * @param b path table index of another intersection
+	 * @return true if there is a road from a to b or from b to a
+	 */
+	boolean adjacent(int a, int b) {
+		if (road(a, b) != null) {
+			return true;
+		}
+		for (int k = inOffsets[a]; k < inOffsets[a + 1]; k++) {
+			if (inSources[k] == b) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
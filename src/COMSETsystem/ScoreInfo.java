@@ -161,6 +161,12 @@ class ScoreInfo {
         System.out.println("Simulation Start Time: " + simulator.simulationStartTime);
         System.out.println("Simulation End Time: " + simulator.simulationEndTime);
         System.out.println("Final Simulation Time: " + simulator.simulationTime);
+        PathTable pathTable = simulator.map.pathTable();
+        if (pathTable instanceof LazyPathTable) {
+            LazyPathTable lazyPathTable = (LazyPathTable) pathTable;
+            System.out.println("Path table row cache: capacity " + lazyPathTable.capacity() + " rows, "
+                    + lazyPathTable.hits() + " hits, " + lazyPathTable.misses() + " misses");
+        }
 
         System.out.println("\n***Statistics***");
 
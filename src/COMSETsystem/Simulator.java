@@ -15,7 +15,7 @@ import DataParsing.*;
  * The Simulator class defines the major steps of the simulation. It is
  * responsible for loading the map, creating the necessary number of agents,
  * creating a respective AgentEvent for each of them such that they are added
- * to the events PriorityQueue. Furthermore it is also responsible for dealing 
+ * to the events queue. Furthermore it is also responsible for dealing 
  * with the arrival of resources, map matching them to the map, and assigning  
  * them to agents. This produces the score according to the scoring rules.
  * <p>
@@ -23,8 +23,10 @@ import DataParsing.*;
  * corresponds to when something will be empty and thus needs some
  * interaction (triggering). There's an event corresponding to every existent
  * Agent and for every resource that hasn't arrived yet. All of this events are
- * in a PriorityQueue called events which is ordered by their time in an
- * increasing way.
+ * in an EventQueue called events which is ordered by their time in an
+ * increasing way, except that the events of resources that are not due yet
+ * wait in time order outside the queue and enter it just before they are
+ * triggered.
  */
 public class Simulator {
 
@@ -34,12 +36,19 @@ public class Simulator {
 	// The map that everything will happen on.
 	protected CityMap map;
 
-	// A deep copy of map to be passed to agents. 
-	// This is a way to make map unmodifiable.
+	// The map passed to agents. It is the same instance as map, not a copy: once configured, makeReadOnly()
+	// wraps its collections so that agents cannot modify them, and the attributes of its intersections,
+	// roads and links are shared and must be treated as read-only.
 	public CityMap mapForAgents;
 
 	// The event queue.
-	private PriorityQueue<Event> events = new PriorityQueue<>();
+	private EventQueue events = new IndexedEventQueue();
+
+	// The resource events not yet in the event queue, in the order in which they are triggered. A resource event
+	// is moved to the event queue just before it is due, so that the queue only holds the events of agents and of
+	// resources already introduced.
+	private List<ResourceEvent> pendingResources = new ArrayList<>();
+	private int nextPendingResource = 0;
 
 	// The set of empty agents.
 	protected TreeSet<AgentEvent> emptyAgents = new TreeSet<>(new AgentEventComparator());
@@ -101,11 +110,13 @@ public class Simulator {
 		map = configuration.map;
 
 
-		// Make a map copy for agents to use so that an agent cannot modify the map used by
+		// Share a read-only map with the agents so that an agent cannot modify the map used by
 		// the simulator
-		mapForAgents = map.makeCopy();
+		map.makeReadOnly();
+		mapForAgents = map;
 
-		MapWithData mapWD = new MapWithData(map, configuration.resourceFile, configuration.agentPlacementRandomSeed);
+		MapWithData mapWD = new MapWithData(map, configuration.resourceFile, configuration.agentPlacementRandomSeed,
+				configuration.makeEventQueue());
 
 		// map match resources
 		System.out.println("Loading and map-matching resources...");
@@ -118,6 +129,7 @@ public class Simulator {
 		trafficPattern = mapWD.getTrafficPattern(configuration.trafficPatternEpoch, configuration.trafficPatternStep,
 				configuration.dynamicTrafficEnabled);
 		fleetManager.setTrafficPattern(trafficPattern);
+		fleetManager.setRandomSeed(configuration.agentPlacementRandomSeed);
 
 		// Deploy agents at random locations of the map.
 		System.out.println("Randomly placing " + configuration.numberOfAgents + " agents on the map...");
@@ -125,6 +137,16 @@ public class Simulator {
 
 		// Initialize the event queue.
 		events = mapWD.getEvents();
+		pendingResources = mapWD.getResourceEvents();
+		nextPendingResource = 0;
+		releasePendingResources();
+
+		// Close the first batch dispatch window one window after the first event.
+		if (configuration.batchDispatchWindow > 0 && !events.isEmpty()) {
+			fleetManager.setBatchDispatchWindow(configuration.batchDispatchWindow);
+			events.add(new BatchDispatchEvent(events.peek().getTime() + configuration.batchDispatchWindow,
+					configuration.batchDispatchWindow, this, fleetManager));
+		}
 
 		mappingEventId();
 	}
@@ -146,6 +168,7 @@ public class Simulator {
 		}
 
 		try (ProgressBar pb = new ProgressBar("Progress:", 100, ProgressBarStyle.ASCII)) {
+			releasePendingResources();
 			assert events.peek() != null;
 			simulationStartTime = simulationTime = events.peek().getTime();
 			long totalSimulationTime = simulationEndTime - simulationStartTime;
@@ -170,6 +193,7 @@ public class Simulator {
 						addEvent(e);
 					}
 				}
+				releasePendingResources();
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -263,16 +287,14 @@ public class Simulator {
 	}
 
 	/**
-	 * Make an agent copy of locationOnRoad so that an agent cannot modify the attributes of the road.
+	 * Make an agent copy of locationOnRoad so that an agent cannot modify the location used by the simulator.
 	 * 
 	 * @param locationOnRoad the location to make a copy for
 	 * @return an agent copy of the location 
 	 */
 	public LocationOnRoad agentCopy(LocationOnRoad locationOnRoad) {
-		Intersection from = mapForAgents.intersections().get(locationOnRoad.road.from.id);
-		Intersection to = mapForAgents.intersections().get(locationOnRoad.road.to.id);
-		Road roadAgentCopy = from.roadsMapFrom.get(to);
-		return LocationOnRoad.copyWithReplacedRoad(roadAgentCopy, locationOnRoad);
+		// the road is shared through the read-only map
+		return LocationOnRoad.copyWithReplacedRoad(locationOnRoad.road, locationOnRoad);
 	}
 
 	public FleetManager createFleetManager(Configuration configuration) {
@@ -287,6 +309,21 @@ public class Simulator {
 		return null;
 	}
 
+	/**
+	 * Move the pending resource events that are to be triggered before the first event of the queue into the
+	 * queue, or the next pending resource event if the queue is empty.
+	 */
+	private void releasePendingResources() {
+		while (nextPendingResource < pendingResources.size()
+				&& (events.isEmpty() || pendingResources.get(nextPendingResource).compareTo(events.peek()) < 0)) {
+			ResourceEvent event = pendingResources.get(nextPendingResource);
+			// released events are not kept here
+			pendingResources.set(nextPendingResource++, null);
+			resMap.put(event.id, event);
+			events.add(event);
+		}
+	}
+
 	private void mappingEventId() {
 		for (Event event : events) {
 			if (event instanceof AgentEvent) {
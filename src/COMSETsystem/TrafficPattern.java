@@ -1,6 +1,7 @@
 package COMSETsystem;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * TrafficPattern is a data structure that represents how the traffic condition changes over the time
@@ -15,6 +16,20 @@ public class TrafficPattern {
 
     private final ArrayList<TrafficPatternItem> trafficPattern;
 
+    // The number of steps a trip is followed one by one before jumping to the step in which it ends. Within
+    // these steps the results are bit-for-bit the same as summing step by step for the whole trip.
+    private static final int WALKED_STEPS = 16;
+
+    // The traffic pattern items in primitive arrays, epochCount of them.
+    private int epochCount = 0;
+    private long[] epochBeginTimes = new long[16];
+    private double[] speedFactors = new double[16];
+    // cumulativeSpeedFactorTimes[i] is the sum of speedFactor * step over the epochs before epoch i, i.e., the
+    // distance traveled from the beginning of the first epoch to the beginning of epoch i at unit speed.
+    private double[] cumulativeSpeedFactorTimes = new double[16];
+    // The largest speed factor of all epochs.
+    private double maxSpeedFactor = 0.0;
+
     public TrafficPattern(long step) {
         this.step = step;
         this.trafficPattern = new ArrayList<TrafficPatternItem>();
@@ -23,6 +38,17 @@ public class TrafficPattern {
     public void addTrafficPatternItem(long epochBeginTime, double speedFactor) {
         TrafficPatternItem trafficPatternItem = new TrafficPatternItem(epochBeginTime, speedFactor);
         trafficPattern.add(trafficPatternItem);
+        if (epochCount == epochBeginTimes.length) {
+            epochBeginTimes = Arrays.copyOf(epochBeginTimes, epochCount * 2);
+            speedFactors = Arrays.copyOf(speedFactors, epochCount * 2);
+            cumulativeSpeedFactorTimes = Arrays.copyOf(cumulativeSpeedFactorTimes, epochCount * 2);
+        }
+        epochBeginTimes[epochCount] = epochBeginTime;
+        speedFactors[epochCount] = speedFactor;
+        cumulativeSpeedFactorTimes[epochCount] = epochCount == 0 ? 0.0
+                : cumulativeSpeedFactorTimes[epochCount - 1] + speedFactors[epochCount - 1] * step;
+        epochCount++;
+        maxSpeedFactor = Math.max(maxSpeedFactor, speedFactor);
         if (trafficPattern.size() == 1) {
             firstEpochBeginTime = epochBeginTime;
             firstEpochSpeedFactor = speedFactor;
@@ -51,54 +77,83 @@ public class TrafficPattern {
             return this.lastEpochSpeedFactor;
         }
         int patternIndex = (int) ((time - this.firstEpochBeginTime) / step);
-        return this.trafficPattern.get(patternIndex).speed_factor;
+        return speedFactors[patternIndex];
+    }
+
+    // the largest speed factor at any time, so that no trip is faster than at the speed limits scaled by it
+    public double maxSpeedFactor() {
+        return maxSpeedFactor;
     }
 
     // compute the dynamic travel time to travel a certain distance of a link starting at a certain time
     public double dynamicForwardTravelTime(double time, double unadjustedSpeed, double distance) {
-
+        // Travel step by step for the first few steps, which covers practically every trip along a road. A
+        // longer trip jumps to the step in which it ends using the cumulative speed factors.
         double totalDistance = 0.0;
         double totalTime = 0.0;
         double currentTime = time;
 
-        double speedFactor;
-        double adjustedSpeed;
-
-        while (true) {
-            double stepTime = -1.0;
-            // travel for one step
+        for (int walkedSteps = 0; ; walkedSteps++) {
             if (currentTime >= this.lastEpochBeginTime) {
-                speedFactor = this.lastEpochSpeedFactor;
-                adjustedSpeed = unadjustedSpeed * speedFactor;
-                stepTime = (distance - totalDistance) / adjustedSpeed;
-                totalTime += stepTime;
-                break;
+                return totalTime + (distance - totalDistance) / (unadjustedSpeed * this.lastEpochSpeedFactor);
+            }
+            double stepTime;
+            double speedFactor;
+            if (currentTime < this.firstEpochBeginTime) {
+                stepTime = this.firstEpochBeginTime - currentTime;
+                speedFactor = this.firstEpochSpeedFactor;
             } else {
-                if (currentTime < this.firstEpochBeginTime) {
-                    stepTime = this.firstEpochBeginTime - currentTime;
-                    speedFactor = this.firstEpochSpeedFactor;
-                } else {
-                    int patternIndex = (int) ((currentTime - this.firstEpochBeginTime) / step);
-                    stepTime = trafficPattern.get(patternIndex).epochBeginTime + step - currentTime;
-                    speedFactor = this.trafficPattern.get(patternIndex).speed_factor;
-                }
-                adjustedSpeed = unadjustedSpeed * speedFactor;
-                double stepDistance = adjustedSpeed * stepTime;
-                if (totalDistance + stepDistance < distance) {
-                    // finish a full step
-                    totalDistance += stepDistance;
-                    totalTime += stepTime;
-                    currentTime += stepTime;
-                } else {
-                    // finish a partial step
-                    double remainingDistance = distance - totalDistance;
-                    double remainingTime = remainingDistance / adjustedSpeed;
-                    totalTime += remainingTime;
-                    break;
+                int patternIndex = (int) ((currentTime - this.firstEpochBeginTime) / step);
+                if (walkedSteps >= WALKED_STEPS) {
+                    // currentTime is the beginning of epoch patternIndex
+                    double target = cumulativeSpeedFactorTimes[patternIndex]
+                            + (distance - totalDistance) / unadjustedSpeed;
+                    int endIndex = lastEpochIndexBefore(target, patternIndex);
+                    return totalTime + (epochBeginTimes[endIndex] - currentTime)
+                            + (target - cumulativeSpeedFactorTimes[endIndex]) / speedFactors[endIndex];
                 }
+                stepTime = epochBeginTimes[patternIndex] + step - currentTime;
+                speedFactor = speedFactors[patternIndex];
+            }
+            double adjustedSpeed = unadjustedSpeed * speedFactor;
+            double stepDistance = adjustedSpeed * stepTime;
+            if (totalDistance + stepDistance < distance) {
+                // finish a full step
+                totalDistance += stepDistance;
+                totalTime += stepTime;
+                currentTime += stepTime;
+            } else {
+                // finish a partial step
+                return totalTime + (distance - totalDistance) / adjustedSpeed;
             }
         }
-        return totalTime;
+    }
+
+    // compute the dynamic travel time of a trip that takes a given time at the speed limits. Since a speed factor
+    // applies to all roads alike, this is the dynamic travel time of any path with that static travel time.
+    public double dynamicTravelTime(double time, double staticTravelTime) {
+        return dynamicForwardTravelTime(time, 1.0, staticTravelTime);
+    }
+
+    // The last epoch at or after fromIndex whose cumulative speed factor time is below target, i.e., the epoch
+    // in which a trip reaching target ends; the last epoch if the trip does not end before it.
+    private int lastEpochIndexBefore(double target, int fromIndex) {
+        int lastIndex = epochCount - 1;
+        if (cumulativeSpeedFactorTimes[lastIndex] < target) {
+            return lastIndex;
+        }
+        // invariant: cumulative[low] < target <= cumulative[high]
+        int low = fromIndex;
+        int high = lastIndex;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (cumulativeSpeedFactorTimes[mid] < target) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 
     // dynamic travel time from a location on a road to the end of the road starting at a given time (long type)
@@ -139,63 +194,54 @@ public class TrafficPattern {
 
     // compute the travel distance along a link for a certain time starting at a given time
     public double[] dynamicTravelDistance(double time, double unadjustedSpeed, double travelTime, double maxDistance) {
+        double distance = dynamicTravelDistance(time, unadjustedSpeed, travelTime);
+        if (distance > maxDistance) {
+            return new double[] {maxDistance, dynamicForwardTravelTime(time, unadjustedSpeed, maxDistance)};
+        }
+        return new double[] {distance, travelTime};
+    }
+
+    // compute the travel distance for a certain time starting at a given time
+    public double dynamicTravelDistance(double time, double unadjustedSpeed, double travelTime) {
+        // Travel step by step for the first few steps, which covers practically every trip along a road. A
+        // longer trip jumps to the step in which it ends, which is found directly since all steps have the
+        // same length.
         double totalDistance = 0.0;
         double totalTime = 0.0;
         double currentTime = time;
 
-        double speedFactor;
-        double adjustedSpeed;
-        double distance;
-
-        while (true) {
-            double stepTime = -1.0;
-            // travel for one step
+        for (int walkedSteps = 0; ; walkedSteps++) {
             if (currentTime >= this.lastEpochBeginTime) {
-                speedFactor = this.lastEpochSpeedFactor;
-                adjustedSpeed = unadjustedSpeed * speedFactor;
-                distance = (travelTime - totalTime) * adjustedSpeed;
-                if (totalDistance + distance > maxDistance) {
-                    double remainingDistance = maxDistance - totalDistance;
-                    totalTime += remainingDistance / adjustedSpeed;
-                    totalDistance = maxDistance;
-                } else {
-                    totalDistance += distance;
-                    totalTime = travelTime;
-                }
-                break;
+                return totalDistance + (travelTime - totalTime) * (unadjustedSpeed * this.lastEpochSpeedFactor);
+            }
+            double stepTime;
+            double speedFactor;
+            if (currentTime < this.firstEpochBeginTime) {
+                stepTime = this.firstEpochBeginTime - currentTime;
+                speedFactor = this.firstEpochSpeedFactor;
             } else {
-                if (currentTime < this.firstEpochBeginTime) {
-                    stepTime = this.firstEpochBeginTime - currentTime;
-                    speedFactor = this.firstEpochSpeedFactor;
-                } else {
-                    int patternIndex = (int) ((currentTime - this.firstEpochBeginTime) / step);
-                    stepTime = trafficPattern.get(patternIndex).epochBeginTime + step - currentTime;
-                    speedFactor = trafficPattern.get(patternIndex).speed_factor;
-                }
-                adjustedSpeed = unadjustedSpeed * speedFactor;
-                if (totalTime + stepTime > travelTime) {
+                int patternIndex = (int) ((currentTime - this.firstEpochBeginTime) / step);
+                if (walkedSteps >= WALKED_STEPS) {
+                    // currentTime is the beginning of epoch patternIndex
                     double remainingTime = travelTime - totalTime;
-                    distance = adjustedSpeed * remainingTime;
-                    totalDistance += distance;
-                    totalTime = travelTime;
-                    break;
-                } else {
-                    distance = adjustedSpeed * stepTime;
-                    if (totalDistance + distance > maxDistance) {
-                        double remainingDistance = maxDistance - totalDistance;
-                        totalTime += remainingDistance / adjustedSpeed;
-                        totalDistance = maxDistance;
-                        break;
-                    } else {
-                        totalDistance += distance;
-                        totalTime += stepTime;
-                        currentTime += stepTime;
-                    }
+                    int endIndex = (int) Math.min(epochCount - 1, patternIndex + (long) (remainingTime / step));
+                    double timeInEndEpoch = (epochBeginTimes[patternIndex] - epochBeginTimes[endIndex]) + remainingTime;
+                    return totalDistance + unadjustedSpeed * (cumulativeSpeedFactorTimes[endIndex]
+                            - cumulativeSpeedFactorTimes[patternIndex] + speedFactors[endIndex] * timeInEndEpoch);
                 }
+                stepTime = epochBeginTimes[patternIndex] + step - currentTime;
+                speedFactor = speedFactors[patternIndex];
+            }
+            double adjustedSpeed = unadjustedSpeed * speedFactor;
+            if (totalTime + stepTime > travelTime) {
+                // finish a partial step
+                return totalDistance + adjustedSpeed * (travelTime - totalTime);
             }
+            // finish a full step
+            totalDistance += adjustedSpeed * stepTime;
+            totalTime += stepTime;
+            currentTime += stepTime;
         }
-        double[] returnValue = {totalDistance, totalTime};
-        return returnValue;
     }
 
     // The location when traveling along a road from a given location for a given amount of time (double type) starting at a given time.
@@ -206,10 +252,8 @@ public class TrafficPattern {
 
     // The location when traveling along a road from a given location for a given amount of time (long type) starting at a given time.
     public LocationOnRoad travelRoadForTime(double time, LocationOnRoad locationOnRoad, double travelTime) {
-        double[] distanceTimePair = dynamicTravelDistance(time, locationOnRoad.road.speed, travelTime, locationOnRoad.road.length);
-        double traveledDistance = distanceTimePair[0];
-        double traveledTime = distanceTimePair[1];
-        if (traveledTime < travelTime) {
+        double traveledDistance = dynamicTravelDistance(time, locationOnRoad.road.speed, travelTime);
+        if (traveledDistance > locationOnRoad.road.length) {
             // reached the end of road before travel time is used out
             return LocationOnRoad.createFromRoadEnd(locationOnRoad.road);
         } else {
@@ -1,37 +1,78 @@
 package DataParsing;
 
-import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.time.LocalDate;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.LocalDateTime;
+import java.time.zone.ZoneRules;
 import MapCreation.MapCreator;
 
-/**       
+/**
  * The CSVNewYorkParser class parses a New York TLC data file for a month before July of 2016.
  * The following columns are extracted from each row to create a Resource object.
- * 
- * 1. "tpep_pickup_datetime": This time stamp is treated as the time at which the resource (passenger) 
+ *
+ * 1. "tpep_pickup_datetime": This time stamp is treated as the time at which the resource (passenger)
  *    is introduced to the system.
  * 2. "pickup_longitude", "pickup_latitude": The location at which the resource (passenger) is introduced.
- * 3. "dropoff_longitude", "dropoff_latitude": The location at which the resource (passenger) is dropped off. 
- *   
+ * 3. "dropoff_longitude", "dropoff_latitude": The location at which the resource (passenger) is dropped off.
+ *
+ * The file is read as bytes through a large buffer and the fields are parsed in place: time stamps are decoded
+ * by hand with a UTC offset cached per day, and decimal numbers without exponent are converted without creating
+ * strings. Resources are handed to a consumer as they are read, so a file of any size is parsed in constant
+ * memory.
+ *
  * @author TijanaKlimovic
  */
 public class CSVNewYorkParser {
 
+	// the column indices of the extracted fields
+	private static final int PICKUP_TIME = 1;
+	private static final int DROPOFF_TIME = 2;
+	private static final int PICKUP_LON = 5;
+	private static final int PICKUP_LAT = 6;
+	private static final int DROPOFF_LON = 9;
+	private static final int DROPOFF_LAT = 10;
+	private static final int FIELDS = 11;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	// the largest integer below which all integers are exact doubles, and the exact powers of ten
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
 	// absolute path to csv file to be parsed
 	private final String path;
 
-	// list of all resources
-	private final ArrayList<Resource> resources = new ArrayList<>();
-
 	DateTimeFormatter dtf;
 
 	ZoneId zoneId;
 
+	private final ZoneRules zoneRules;
+
+	// The UTC offset in seconds of each local day seen so far, by epoch day, or CHANGING_OFFSET for a day on
+	// which the offset changes; the last day looked up is kept aside, as rows come roughly in time order.
+	private static final int CHANGING_OFFSET = Integer.MIN_VALUE;
+	private final Map<Long, Integer> dayOffsets = new HashMap<>();
+	private long lastEpochDay = Long.MIN_VALUE;
+	private int lastDayOffset;
+
+	// the current line, and the start and end of each of its fields
+	private byte[] line = new byte[256];
+	private final int[] fieldStarts = new int[FIELDS];
+	private final int[] fieldEnds = new int[FIELDS];
+
 	/**
 	 * Constructor of the CSVNewYorkParser class
 	 * @param path full path to the resource dataset file
@@ -43,6 +84,7 @@ public class CSVNewYorkParser {
 		dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 		// TLC Trip Record data uses local time. So the zone ID is America/New_York
 		this.zoneId = zoneId;
+		this.zoneRules = zoneId.getRules();
 	}
 
 	/**
@@ -62,52 +104,211 @@ public class CSVNewYorkParser {
 
 	/**
 	 * Parse the csv file.
-	 * 
+	 *
 	 * @return ArrayList<Resource>
 	 */
 	public ArrayList<Resource> parse(long timeResolution) {
-
+		ArrayList<Resource> resources = new ArrayList<>();
 		try {
-			Scanner sc = new Scanner(new File(path));   //scanner will scan the file specified by path
-			sc.useDelimiter(",|\n");    //scanner will skip over "," and "\n" found in file
-			sc.nextLine(); // skip the header
-
-			//while there are tokens in the file the scanner will scan the input
-			//each line in input file will contain 4 tokens for the scanner and will be in the format : latitude longitude time type
-			//per line of input file we will create a new TimestampAgRe object
-			// and save the 4 tokens of each line in the corresponding field of the TimestampAgRe object
-			int resource_count = 0;
-			while (sc.hasNext()) {
-				sc.next();// skip first VendorID
-				long time = dateConversion(sc.next()) * timeResolution;
-				long dropoffTime = dateConversion(sc.next()) * timeResolution;
-				sc.next();// skip these fields
-				sc.next();
-				double pickupLon = Double.parseDouble(sc.next());
-				double pickupLat = Double.parseDouble(sc.next());
-				sc.next();// skip these fields
-				sc.next();
-				double dropoffLon = Double.parseDouble(sc.next());
-				double dropoffLat = Double.parseDouble(sc.next());
-				sc.nextLine(); //skip rest of fileds in this line
-				// Only keep the resources such that both pickup location and dropoff location are within the bounding polygon.
-				if (!(MapCreator.insidePolygon(pickupLon, pickupLat) && MapCreator.insidePolygon(dropoffLon, dropoffLat))) {
-					continue;
+			parse(timeResolution, resources::add);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return resources;
+	}
+
+	/**
+	 * Parse the csv file, handing each resource to a consumer as soon as it is read.
+	 *
+	 * @param timeResolution the number of simulation time units per second
+	 * @param consumer the consumer of the resources, in the order of the file; its exceptions are not caught
+	 * @throws IOException if the file cannot be read
+	 */
+	public void parse(long timeResolution, Consumer<Resource> consumer) throws IOException {
+		try (InputStream in = new FileInputStream(path)) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int length = 0;
+			boolean header = true;
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				for (int i = 0; i < read; i++) {
+					byte b = buffer[i];
+					if (b != '\n') {
+						if (length == line.length) {
+							byte[] longer = new byte[line.length * 2];
+							System.arraycopy(line, 0, longer, 0, length);
+							line = longer;
+						}
+						line[length++] = b;
+						continue;
+					}
+					if (header) {
+						header = false; // skip the header
+					} else {
+						parseLine(length, timeResolution, consumer);
+					}
+					length = 0;
 				}
-				if (pickupLat == dropoffLat && pickupLon == dropoffLon) {
-					continue;
+			}
+			if (length > 0 && !header) {
+				parseLine(length, timeResolution, consumer);
+			}
+		}
+	}
+
+	private void parseLine(int length, long timeResolution, Consumer<Resource> consumer) {
+		if (length > 0 && line[length - 1] == '\r') {
+			length--;
+		}
+		if (length == 0) {
+			return;
+		}
+		int field = 0;
+		fieldStarts[0] = 0;
+		for (int i = 0; i < length && field < FIELDS; i++) {
+			if (line[i] == ',') {
+				fieldEnds[field++] = i;
+				if (field < FIELDS) {
+					fieldStarts[field] = i + 1;
 				}
-				resources.add(new Resource(pickupLat, pickupLon, dropoffLat, dropoffLon, time, dropoffTime)); //create new resource with the above fields
-				resource_count += 1;
-				//if (resource_count == 100)
-				//	break;
 			}
-			sc.close();
-		} catch (Exception e) {
+		}
+		if (field < FIELDS - 1) {
+			System.out.println("Skipping a line with " + (field + 1) + " fields: "
+					+ new String(line, 0, length, StandardCharsets.US_ASCII));
+			return;
+		}
+		if (field == FIELDS - 1) {
+			// the last field ends the line
+			fieldEnds[field] = length;
+		}
 
-			e.printStackTrace();
+		long time = parseTime(PICKUP_TIME) * timeResolution;
+		long dropoffTime = parseTime(DROPOFF_TIME) * timeResolution;
+		double pickupLon = parseDouble(PICKUP_LON);
+		double pickupLat = parseDouble(PICKUP_LAT);
+		double dropoffLon = parseDouble(DROPOFF_LON);
+		double dropoffLat = parseDouble(DROPOFF_LAT);
+		// Only keep the resources such that both pickup location and dropoff location are within the bounding polygon.
+		if (!(MapCreator.insidePolygon(pickupLon, pickupLat) && MapCreator.insidePolygon(dropoffLon, dropoffLat))) {
+			return;
 		}
-		return resources;
+		if (pickupLat == dropoffLat && pickupLon == dropoffLon) {
+			return;
+		}
+		consumer.accept(new Resource(pickupLat, pickupLon, dropoffLat, dropoffLon, time, dropoffTime));
 	}
 
+	private String fieldString(int field) {
+		return new String(line, fieldStarts[field], fieldEnds[field] - fieldStarts[field], StandardCharsets.US_ASCII);
+	}
+
+	// The value of the digits of line from start to end; -1 if there is any other character.
+	private int digits(int start, int end) {
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Parse a time stamp of the form yyyy-MM-dd HH:mm:ss in the time zone of the parser.
+	 *
+	 * @return the Linux epoch of the time stamp
+	 */
+	private long parseTime(int field) {
+		int s = fieldStarts[field];
+		if (fieldEnds[field] - s != 19 || line[s + 4] != '-' || line[s + 7] != '-' || line[s + 10] != ' '
+				|| line[s + 13] != ':' || line[s + 16] != ':') {
+			return dateConversion(fieldString(field));
+		}
+		int year = digits(s, s + 4);
+		int month = digits(s + 5, s + 7);
+		int day = digits(s + 8, s + 10);
+		int hour = digits(s + 11, s + 13);
+		int minute = digits(s + 14, s + 16);
+		int second = digits(s + 17, s + 19);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > 28 && day > LocalDate.of(year, month, 1).lengthOfMonth()
+				|| hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+			// let the formatter report or resolve it
+			return dateConversion(fieldString(field));
+		}
+		long epochDay = epochDay(year, month, day);
+		if (epochDay != lastEpochDay) {
+			lastDayOffset = dayOffsets.computeIfAbsent(epochDay, this::dayOffset);
+			lastEpochDay = epochDay;
+		}
+		int offset = lastDayOffset;
+		if (offset == CHANGING_OFFSET) {
+			return dateConversion(fieldString(field));
+		}
+		return epochDay * 86400L + hour * 3600 + minute * 60 + second - offset;
+	}
+
+	// The days from 1970-01-01 to a date of the proleptic Gregorian calendar.
+	private static long epochDay(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = Math.floorDiv(y, 400);
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	// The UTC offset of a local day in seconds; CHANGING_OFFSET if it changes during the day.
+	private int dayOffset(long epochDay) {
+		LocalDate date = LocalDate.ofEpochDay(epochDay);
+		ZoneOffset start = zoneRules.getOffset(date.atStartOfDay());
+		ZoneOffset end = zoneRules.getOffset(date.plusDays(1).atStartOfDay());
+		if (!start.equals(end) || zoneRules.getValidOffsets(date.atStartOfDay()).size() != 1) {
+			return CHANGING_OFFSET;
+		}
+		return start.getTotalSeconds();
+	}
+
+	/**
+	 * Parse a decimal number. Numbers with at most 15 significant digits, no exponent and at most 22 decimals are
+	 * converted with a single correctly rounded division, which gives the same result as Double.parseDouble;
+	 * other numbers are handed to Double.parseDouble.
+	 */
+	private double parseDouble(int field) {
+		int i = fieldStarts[field];
+		int end = fieldEnds[field];
+		boolean negative = false;
+		if (i < end && (line[i] == '-' || line[i] == '+')) {
+			negative = line[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int decimals = 0;
+		boolean point = false;
+		boolean digits = false;
+		for (; i < end; i++) {
+			byte b = line[i];
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				if (mantissa >= MAX_EXACT_MANTISSA) {
+					return Double.parseDouble(fieldString(field));
+				}
+				digits = true;
+				if (point) {
+					decimals++;
+				}
+			} else if (b == '.' && !point) {
+				point = true;
+			} else {
+				return Double.parseDouble(fieldString(field));
+			}
+		}
+		if (!digits || decimals >= POWERS_OF_TEN.length) {
+			return Double.parseDouble(fieldString(field));
+		}
+		double value = mantissa / POWERS_OF_TEN[decimals];
+		return negative ? -value : value;
+	}
 }
@@ -0,0 +1,226 @@
+package DataParsing;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import COMSETsystem.Link;
+
+/**
+ * The LinkIndex class is a spatial index over the links of a map for map matching. It is an R-tree bulk loaded
+ * with Sort-Tile-Recursive packing: the links are sorted into vertical slices by the x of their centers, each
+ * slice is sorted by y and cut into leaves of NODE_CAPACITY links, and the leaves are packed into parent nodes
+ * the same way up to a single root. The tree is balanced whatever the order of the links, and it is stored in
+ * flat arrays, the segments of the links in leaf order next to each other.
+ *
+ * The index does not change once built, and a nearest link query allocates nothing, so any number of threads
+ * may query it at the same time.
+ */
+public class LinkIndex {
+
+	private static final int NODE_CAPACITY = 16;
+
+	// the links in leaf order, and their segments as x1, y1, x2, y2
+	private final Link[] links;
+	private final double[] segments;
+
+	// the bounding box of each node as minX, minY, maxX, maxY; the leaves come first and the root last
+	private final double[] boxes;
+	// the first child of each node and the number of children; the children of a leaf are links
+	private final int[] firstChild;
+	private final int[] childCount;
+	private int nodeCount = 0;
+	private final int leafCount;
+	private final int root;
+
+	/**
+	 * Builds the index of a list of links.
+	 *
+	 * @param links the links to index
+	 */
+	public LinkIndex(List<Link> links) {
+		int n = links.size();
+		int capacity = 1;
+		for (int count = n; count > 1; count = (count + NODE_CAPACITY - 1) / NODE_CAPACITY) {
+			capacity += (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		}
+		boxes = new double[capacity * 4];
+		firstChild = new int[capacity];
+		childCount = new int[capacity];
+
+		// the level of links
+		double[] levelBoxes = new double[n * 4];
+		for (int i = 0; i < n; i++) {
+			Link link = links.get(i);
+			levelBoxes[i * 4] = link.minX;
+			levelBoxes[i * 4 + 1] = link.minY;
+			levelBoxes[i * 4 + 2] = link.maxX;
+			levelBoxes[i * 4 + 3] = link.maxY;
+		}
+		int[] order = packingOrder(levelBoxes, n);
+		this.links = new Link[n];
+		this.segments = new double[n * 4];
+		for (int i = 0; i < n; i++) {
+			Link link = links.get(order[i]);
+			this.links[i] = link;
+			segments[i * 4] = link.from.getX();
+			segments[i * 4 + 1] = link.from.getY();
+			segments[i * 4 + 2] = link.to.getX();
+			segments[i * 4 + 3] = link.to.getY();
+		}
+		levelBoxes = permute(levelBoxes, order, n);
+		int levelStart = 0;
+		int levelSize = n;
+		boolean leaves = true;
+		int leafCount = 0;
+		while (levelSize > 0) {
+			// pack the current level, whose boxes are already in packing order, into parent nodes
+			int parentStart = nodeCount;
+			for (int first = 0; first < levelSize; first += NODE_CAPACITY) {
+				int count = Math.min(NODE_CAPACITY, levelSize - first);
+				int node = nodeCount++;
+				firstChild[node] = levelStart + first;
+				childCount[node] = count;
+				double minX = Double.POSITIVE_INFINITY;
+				double minY = Double.POSITIVE_INFINITY;
+				double maxX = Double.NEGATIVE_INFINITY;
+				double maxY = Double.NEGATIVE_INFINITY;
+				for (int i = first; i < first + count; i++) {
+					minX = Math.min(minX, levelBoxes[i * 4]);
+					minY = Math.min(minY, levelBoxes[i * 4 + 1]);
+					maxX = Math.max(maxX, levelBoxes[i * 4 + 2]);
+					maxY = Math.max(maxY, levelBoxes[i * 4 + 3]);
+				}
+				boxes[node * 4] = minX;
+				boxes[node * 4 + 1] = minY;
+				boxes[node * 4 + 2] = maxX;
+				boxes[node * 4 + 3] = maxY;
+			}
+			int parentCount = nodeCount - parentStart;
+			if (leaves) {
+				leafCount = parentCount;
+				leaves = false;
+			}
+			if (parentCount == 1) {
+				break;
+			}
+			// put the new level in packing order before building the level above it
+			levelBoxes = Arrays.copyOfRange(boxes, parentStart * 4, nodeCount * 4);
+			order = packingOrder(levelBoxes, parentCount);
+			int[] first = Arrays.copyOfRange(firstChild, parentStart, nodeCount);
+			int[] count = Arrays.copyOfRange(childCount, parentStart, nodeCount);
+			levelBoxes = permute(levelBoxes, order, parentCount);
+			for (int i = 0; i < parentCount; i++) {
+				firstChild[parentStart + i] = first[order[i]];
+				childCount[parentStart + i] = count[order[i]];
+			}
+			System.arraycopy(levelBoxes, 0, boxes, parentStart * 4, parentCount * 4);
+			levelStart = parentStart;
+			levelSize = parentCount;
+		}
+		this.leafCount = leafCount;
+		this.root = nodeCount - 1;
+	}
+
+	/**
+	 * The Sort-Tile-Recursive order of a level of boxes: sorted by the x of their centers into slices of whole
+	 * nodes, and each slice sorted by the y of their centers.
+	 */
+	private static int[] packingOrder(double[] boxes, int count) {
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingDouble(i -> boxes[i * 4] + boxes[i * 4 + 2]));
+		int nodes = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		int slices = (int) Math.ceil(Math.sqrt(nodes));
+		int sliceSize = (int) Math.ceil((double) nodes / slices) * NODE_CAPACITY;
+		for (int start = 0; start < count; start += sliceSize) {
+			Arrays.sort(order, start, Math.min(count, start + sliceSize),
+					Comparator.comparingDouble(i -> boxes[i * 4 + 1] + boxes[i * 4 + 3]));
+		}
+		int[] result = new int[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = order[i];
+		}
+		return result;
+	}
+
+	private static double[] permute(double[] boxes, int[] order, int count) {
+		double[] permuted = new double[count * 4];
+		for (int i = 0; i < count; i++) {
+			System.arraycopy(boxes, order[i] * 4, permuted, i * 4, 4);
+		}
+		return permuted;
+	}
+
+	/**
+	 * @return the number of links in the index.
+	 */
+	public int size() {
+		return links.length;
+	}
+
+	/**
+	 * The link nearest to a point; of several links at the same distance, the one with the smallest id.
+	 *
+	 * @param x the x coordinate of the point
+	 * @param y the y coordinate of the point
+	 * @return the nearest link; null if the index is empty
+	 */
+	public Link nearest(double x, double y) {
+		if (links.length == 0) {
+			return null;
+		}
+		return links[nearest(root, x, y, -1)];
+	}
+
+	// The nearest link to a point in the subtree of a node, or best if none is nearer.
+	private int nearest(int node, double x, double y, int best) {
+		double bestDistSq = best < 0 ? Double.POSITIVE_INFINITY : segmentDistanceSq(best, x, y);
+		int first = firstChild[node];
+		int end = first + childCount[node];
+		if (node < leafCount) {
+			for (int i = first; i < end; i++) {
+				double distSq = segmentDistanceSq(i, x, y);
+				if (distSq < bestDistSq || distSq == bestDistSq && links[i].id < links[best].id) {
+					best = i;
+					bestDistSq = distSq;
+				}
+			}
+			return best;
+		}
+		// visit the child nearest to the point first, then the others that may still contain a nearer link
+		int closest = first;
+		double closestDistSq = boxDistanceSq(first, x, y);
+		for (int child = first + 1; child < end; child++) {
+			double distSq = boxDistanceSq(child, x, y);
+			if (distSq < closestDistSq) {
+				closest = child;
+				closestDistSq = distSq;
+			}
+		}
+		if (closestDistSq <= bestDistSq) {
+			best = nearest(closest, x, y, best);
+			bestDistSq = segmentDistanceSq(best, x, y);
+		}
+		for (int child = first; child < end; child++) {
+			if (child != closest && boxDistanceSq(child, x, y) <= bestDistSq) {
+				best = nearest(child, x, y, best);
+				bestDistSq = segmentDistanceSq(best, x, y);
+			}
+		}
+		return best;
+	}
+
+	// The squared distance from a point to the bounding box of a node; 0 if the point is inside.
+	private double boxDistanceSq(int node, double x, double y) {
+		double dx = Math.max(0.0, Math.max(boxes[node * 4] - x, x - boxes[node * 4 + 2]));
+		double dy = Math.max(0.0, Math.max(boxes[node * 4 + 1] - y, y - boxes[node * 4 + 3]));
+		return dx * dx + dy * dy;
+	}
+
+	private double segmentDistanceSq(int i, double x, double y) {
+		return Link.segmentDistanceSq(segments[i * 4], segments[i * 4 + 1], segments[i * 4 + 2], segments[i * 4 + 3], x, y);
+	}
+}
@@ -2,8 +2,10 @@ package DataParsing;
 
 import COMSETsystem.*;
 
+import java.io.IOException;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * The MapWithData class is responsible for loading a resource dataset file,
@@ -17,8 +19,11 @@ public class MapWithData {
 	// Full path of the file containing the resources to be loaded to the simulator
 	private final String resourceFile;
 
-	// Priority queue of events
-	public PriorityQueue<Event> events;
+	// Queue of events
+	public EventQueue events;
+
+	// The resource events, kept out of the queue until the simulation reaches them
+	private final ArrayList<ResourceEvent> resourceEvents = new ArrayList<>();
 
 	// The earliest resource introduction time. The time is used to determine the time at which
 	// agents are to be deployed. The agents are to be deployed at time earliestResourceTime - 1.
@@ -36,6 +41,12 @@ public class MapWithData {
 
 	private ArrayList<Resource> resourcesParsed;
 
+	// The static trip time of each resource of resourcesParsed.
+	private long[] staticTripTimes;
+
+	// The number of resources map matched together in parallel while the resource file is read.
+	private static final int MATCHING_CHUNK_SIZE = 1 << 16;
+
 	/**
 	 * Constructor of MapWithData
 	 * @param map reference to the map
@@ -43,18 +54,29 @@ public class MapWithData {
 	 * @param agentPlacementRandomSeed Seed for randome number that generates agent placements
 	 */
 	public MapWithData(CityMap map, String resourceFile, long agentPlacementRandomSeed) {
+		this(map, resourceFile, agentPlacementRandomSeed, new IndexedEventQueue());
+	}
+
+	/**
+	 * Constructor of MapWithData
+	 * @param map reference to the map
+	 * @param resourceFile full path to the resource file
+	 * @param agentPlacementRandomSeed Seed for randome number that generates agent placements
+	 * @param events the empty event queue to which the created events are added
+	 */
+	public MapWithData(CityMap map, String resourceFile, long agentPlacementRandomSeed, EventQueue events) {
 		this.map = map;
 		this.resourceFile = resourceFile;
 		this.agentPlacementRandomSeed = agentPlacementRandomSeed;
-		events = new PriorityQueue<>();
+		this.events = events;
 		zoneId = map.computeZoneId();
 	}
 
 	/**
 	 * Maps each agent and each resource onto the nearest location on the map
 	 * according to the agent/resource's longitude and latitude. Creates resource events 
-	 * for each passenger record obtained from the resource file and adds them to the events
-	 * priority queue.
+	 * for each passenger record obtained from the resource file; they are handed to the
+	 * simulator with getResourceEvents rather than added to the events queue.
 	 *
 	 * @param configuration configuration object containing run-time parameters
 	 * @param simulator Simulator object with whose methods agent and resource events can
@@ -63,49 +85,137 @@ public class MapWithData {
 	 */
 	// FIXME: Pass in configuration here too instead of accessing it with the singleton.
 	public long createMapWithData(Configuration configuration, Simulator simulator, FleetManager fleetManager) {
+		resourcesParsed = new ArrayList<>();
+		staticTripTimes = new long[MATCHING_CHUNK_SIZE];
+
+		// load the map matched resources of an earlier run if they are cached
+		TripDatasetCache cache = makeTripDatasetCache(configuration);
+		MappedTrips trips = cache == null ? null : cache.load(map.roads());
+		if (trips != null) {
+			System.out.println("Loading map-matched resources from " + cache.file() + "...");
+			for (int i = 0; i < trips.size(); i++) {
+				// the coordinates of the resources are not cached
+				Resource resource = new Resource(Double.NaN, Double.NaN, Double.NaN, Double.NaN, trips.time(i),
+						trips.dropoffTime(i));
+				resource.setPickupLocation(trips.pickupLocation(i));
+				resource.setDropoffLocation(trips.dropoffLocation(i));
+				addResourceEvent(resource, trips.staticTripTime(i), configuration, simulator, fleetManager);
+			}
+			return latestResourceTime;
+		}
 
-
+		// map match the resources in chunks as they are read
+		ArrayList<Resource> chunk = new ArrayList<>(MATCHING_CHUNK_SIZE);
 		CSVNewYorkParser parser = new CSVNewYorkParser(resourceFile, zoneId);
-		resourcesParsed = parser.parse(Configuration.timeResolution);
+		boolean loaded = false;
 		try {
-            for (Resource resource : resourcesParsed) {
-				// map matching
-				LocationOnRoad pickupMatch = mapMatch(resource.getPickupLon(), resource.getPickupLat());
-				LocationOnRoad dropoffMatch = mapMatch(resource.getDropoffLon(), resource.getDropoffLat());
+			parser.parse(Configuration.timeResolution, resource -> {
+				chunk.add(resource);
+				if (chunk.size() == MATCHING_CHUNK_SIZE) {
+					addResourceEvents(chunk, configuration, simulator, fleetManager);
+					chunk.clear();
+				}
+			});
+			addResourceEvents(chunk, configuration, simulator, fleetManager);
+			loaded = true;
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
 
-				// TODO: won't need trip time
-				long staticTripTime = simulator.mapForAgents.travelTimeBetween(pickupMatch, dropoffMatch);
+		// only a complete set of resources is cached; a partial one would be reused by later runs
+		if (cache != null && loaded) {
+			System.out.println("Caching map-matched resources in " + cache.file() + "...");
+			try {
+				cache.store(resourcesParsed, staticTripTimes, map.roads());
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 
-				resource.setPickupLocation(pickupMatch);
-				resource.setDropoffLocation(dropoffMatch);
+		return latestResourceTime;
+	}
 
-				ResourceEvent ev = new ResourceEvent(pickupMatch, dropoffMatch, resource.getTime(), staticTripTime,
-						simulator, fleetManager, configuration.resourceMaximumLifeTime);
-				events.add(ev);
+	// The cache of map matched trips; null if caching is disabled or the inputs cannot be read.
+	private TripDatasetCache makeTripDatasetCache(Configuration configuration) {
+		if (configuration.datasetCacheDirectory == null) {
+			return null;
+		}
+		try {
+			// static trip times are computed with the path table
+			return new TripDatasetCache(configuration.datasetCacheDirectory, resourceFile,
+					configuration.pathTableType.name(), configuration.mapJSONFile,
+					configuration.boundingPolygonKMLFile);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
 
-				//  track earliestResourceTime and latestResourceTime
-				if (resource.getTime() < earliestResourceTime) {
-					earliestResourceTime = resource.getTime();
-				}
+	/**
+	 * Map match a chunk of resources and create their resource events. The map matching and the static trip times
+	 * of the resources are independent of each other and computed in parallel; the events are then created and
+	 * added in the order of the chunk, so that event ids do not depend on the scheduling of the threads.
+	 */
+	private void addResourceEvents(ArrayList<Resource> chunk, Configuration configuration, Simulator simulator,
+								   FleetManager fleetManager) {
+		long[] chunkStaticTripTimes = new long[chunk.size()];
+		IntStream.range(0, chunk.size()).parallel().forEach(i -> {
+			Resource resource = chunk.get(i);
+			// map matching
+			LocationOnRoad pickupMatch = mapMatch(resource.getPickupLon(), resource.getPickupLat());
+			LocationOnRoad dropoffMatch = mapMatch(resource.getDropoffLon(), resource.getDropoffLat());
+
+			// TODO: won't need trip time
+			chunkStaticTripTimes[i] = simulator.mapForAgents.travelTimeBetween(pickupMatch, dropoffMatch);
+
+			resource.setPickupLocation(pickupMatch);
+			resource.setDropoffLocation(dropoffMatch);
+		});
+
+		for (int i = 0; i < chunk.size(); i++) {
+			addResourceEvent(chunk.get(i), chunkStaticTripTimes[i], configuration, simulator, fleetManager);
+		}
+	}
+
+	/**
+	 * Create the resource event of a map matched resource.
+	 */
+	private void addResourceEvent(Resource resource, long staticTripTime, Configuration configuration,
+								  Simulator simulator, FleetManager fleetManager) {
+		ResourceEvent ev = new ResourceEvent(resource.getPickupLocation(), resource.getDropoffLocation(),
+				resource.getTime(), staticTripTime, simulator, fleetManager,
+				configuration.resourceMaximumLifeTime);
+		resourceEvents.add(ev);
+
+		//  track earliestResourceTime and latestResourceTime
+		if (resource.getTime() < earliestResourceTime) {
+			earliestResourceTime = resource.getTime();
+		}
 
 
-				final long resourceMaximumLifeTime = configuration.resourceMaximumLifeTime;
-				if (resource.getTime() + resourceMaximumLifeTime +ev.staticTripTime > latestResourceTime) {
-					latestResourceTime = resource.getTime() + resourceMaximumLifeTime + ev.staticTripTime;
-				}
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
+		final long resourceMaximumLifeTime = configuration.resourceMaximumLifeTime;
+		if (resource.getTime() + resourceMaximumLifeTime +ev.staticTripTime > latestResourceTime) {
+			latestResourceTime = resource.getTime() + resourceMaximumLifeTime + ev.staticTripTime;
 		}
 
-		return latestResourceTime;
+		// kept for building the traffic pattern and caching
+		if (resourcesParsed.size() == staticTripTimes.length) {
+			staticTripTimes = Arrays.copyOf(staticTripTimes, staticTripTimes.length * 2);
+		}
+		staticTripTimes[resourcesParsed.size()] = staticTripTime;
+		resourcesParsed.add(resource);
 	}
 
 	public TrafficPattern getTrafficPattern(long trafficPatternEpoch, long trafficPatternStep,
 											boolean dynamicTrafficEnabled) {
 		System.out.println("Building traffic patterns...");
-		return buildSlidingTrafficPattern(resourcesParsed, trafficPatternEpoch, trafficPatternStep,
+		TrafficPatternBuilder builder = new TrafficPatternBuilder(trafficPatternEpoch, trafficPatternStep,
 				dynamicTrafficEnabled);
+		for (int i = 0; i < resourcesParsed.size(); i++) {
+			Resource resource = resourcesParsed.get(i);
+			builder.addTrip(resource.getPickupTime(), resource.getDropoffTime(), staticTripTimes[i]);
+		}
+		return builder.build();
 
 	}
 
@@ -113,22 +223,11 @@ public class MapWithData {
 	 * Match a point to the closest location on the map
 	 */
 	public LocationOnRoad mapMatch(double longitude, double latitude) {
-		Link link = map.getNearestLink(longitude, latitude);
-		double [] xy = map.projector().fromLatLon(latitude, longitude);
-		double [] snapResult = snap(link.from.getX(), link.from.getY(), link.to.getX(), link.to.getY(), xy[0], xy[1]);
-		double distanceFromStartVertex = this.distance(snapResult[0], snapResult[1], link.from.getX(), link.from.getY());
-
-		// find the begin distance of link
-		double distanceFromStartIntersection = 0;
-		for (Link aLink : link.road.links) {
-			if (aLink.id == link.id) {
-				distanceFromStartIntersection += distanceFromStartVertex;
-				break;
-			} else {
-				distanceFromStartIntersection += aLink.length;
-			}
-		}
-		return new LocationOnRoad(link.road, distanceFromStartIntersection);
+		double x = map.projector().xFromLon(longitude);
+		double y = map.projector().yFromLat(latitude);
+		Link link = map.getNearestLinkToPoint(x, y);
+		double distanceFromStartVertex = snap(link.from.getX(), link.from.getY(), link.to.getX(), link.to.getY(), x, y);
+		return new LocationOnRoad(link.road, link.beginDistance + distanceFromStartVertex);
 	}
 
 	/**
@@ -142,40 +241,24 @@ public class MapWithData {
 	 * @param x x-coordinate of the point to snap
 	 * @param y y-coordinate of the point to snap
 	 *
-	 * @return the closest point on the line segment.
+	 * @return the distance from (x1, y1) to the closest point on the line segment.
 	 */
-	public double[] snap(double x1, double y1, double x2, double y2, double x, double y) {
-		double[] snapResult = new double[3];
-		double dist;
+	public double snap(double x1, double y1, double x2, double y2, double x, double y) {
 		double length = (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
 
 		if (length == 0.0) {
-			dist = this.distance(x1, y1, x, y);
-			snapResult[0] = x1;
-			snapResult[1] = y1;
-			snapResult[2] = dist;
+			return 0.0;
+		}
+		double t = ((x - x1) * (x2 - x1) + (y - y1) * (y2 - y1)) / length;
+		if (t < 0.0) {
+			return 0.0;
+		} else if (t > 1.0) {
+			return distance(x2, y2, x1, y1);
 		} else {
-			double t = ((x - x1) * (x2 - x1) + (y - y1) * (y2 - y1)) / length;
-			if (t < 0.0) {
-				dist = distance(x1, y1, x, y);
-				snapResult[0] = x1;
-				snapResult[1] = y1;
-				snapResult[2] = dist;
-			} else if (t > 1.0) {
-				dist = distance(x2, y2, x, y);
-				snapResult[0] = x2;
-				snapResult[1] = y2;
-				snapResult[2] = dist;
-			} else {
-				double proj_x = x1 + t * (x2 - x1);
-				double proj_y = y1 + t * (y2 - y1);
-				dist = distance(proj_x, proj_y, x, y);
-				snapResult[0] = proj_x;
-				snapResult[1] = proj_y;
-				snapResult[2] = dist;
-			}
+			double proj_x = x1 + t * (x2 - x1);
+			double proj_y = y1 + t * (y2 - y1);
+			return distance(proj_x, proj_y, x1, y1);
 		}
-		return snapResult;
 	}
 
 	/**
@@ -211,10 +294,21 @@ public class MapWithData {
 	 * 
 	 * @return events
 	 */
-	public PriorityQueue<Event> getEvents() {
+	public EventQueue getEvents() {
 		return events;
 	}
 
+	/**
+	 * The resource events in the order in which they are triggered. The records of a resource file come nearly in
+	 * time order, and those of a trip dataset cache in time order, so the sort takes about linear time.
+	 *
+	 * @return the resource events, which are not in the event queue
+	 */
+	public List<ResourceEvent> getResourceEvents() {
+		resourceEvents.sort(Comparator.naturalOrder());
+		return resourceEvents;
+	}
+
 	/**
 	 * Build a traffic pattern to adjust travel speed at each road over the time of a day.
 	 * The travel speed is computed based on the road segment's speed limit and the TLC Trip Record data to
@@ -238,78 +332,11 @@ public class MapWithData {
 	 */
 	public TrafficPattern buildSlidingTrafficPattern(ArrayList<Resource> resources, long epoch, long step,
 													 boolean dynamicTraffic) {
-		// sort resources by pickup
-		resources.sort(Comparator.comparingLong(TimestampAbstract::getTime));
-		TrafficPattern trafficPattern = new TrafficPattern(step);
-		long epochBeginTime = resources.get(0).getPickupTime();
-		int beginResourceIndex = 0;
-		double lastKnownSpeedFactor = 0.3; // default to 0.3 if no trip data available
-		while (true) {
-			ArrayList<Resource> epochResources = new ArrayList<>();
-			long epochEndTime = epochBeginTime + epoch;
-			int resourceIndex = beginResourceIndex;
-			while (resourceIndex < resources.size() && resources.get(resourceIndex).getPickupTime() < epochEndTime) {
-				if (resources.get(resourceIndex).getDropoffTime() < epochEndTime) {
-					epochResources.add(resources.get(resourceIndex));
-				}
-				resourceIndex += 1;
-			}
-
-			if (dynamicTraffic) {
-				if (epochResources.size() == 0) {
-					// use the previous epoch if available
-					trafficPattern.addTrafficPatternItem(epochBeginTime, lastKnownSpeedFactor);
-				} else {
-					double speedFactor = getSpeedFactor(epochResources);
-					if (speedFactor < 0.0) { // didn't get a valid speed factor
-						trafficPattern.addTrafficPatternItem(epochBeginTime, lastKnownSpeedFactor);
-					} else {
-						if (speedFactor > 1.0) { // cap speed factor to 1
-							speedFactor = 1.0;
-						}
-						trafficPattern.addTrafficPatternItem(epochBeginTime, speedFactor);
-						lastKnownSpeedFactor = speedFactor;
-					}
-				}
-			} else {
-				trafficPattern.addTrafficPatternItem(epochBeginTime, 1.0);
-			}
-
-			epochBeginTime += step;
-			while (beginResourceIndex < resources.size() && resources.get(beginResourceIndex).getPickupTime() < epochBeginTime) {
-				beginResourceIndex += 1;
-			}
-
-			if (resourceIndex == resources.size()) {
-				break;
-			}
-		}
-		return trafficPattern;
-	}
-
-	/**
-	 * Compute speed factor from a set of resources. Speed factor is based on actual travel times
-	 * compared to ideal travel time between picku and location based on distance.
-	 * @param resources the set of resources that will determine the speed factor.
-	 * @return speed factor
-	 */
-	public double getSpeedFactor(ArrayList<Resource> resources) {
-		long totalActualTravelTime = 0;
-		long totalSimulatedTravelTime = 0;
+		TrafficPatternBuilder builder = new TrafficPatternBuilder(epoch, step, dynamicTraffic);
 		for (Resource r : resources) {
-			long pickupTime = r.getPickupTime();
-			long dropoffTime = r.getDropoffTime();
-			long actualTravelTime = dropoffTime - pickupTime;
-
-			long simulatedTravelTime = map.travelTimeBetween(r.getPickupLocation(), r.getDropoffLocation());
-
-			totalActualTravelTime += actualTravelTime;
-			totalSimulatedTravelTime += simulatedTravelTime;
-		}
-		if (totalActualTravelTime == 0) {
-			return -1.0;
-		} else {
-			return ((double) totalSimulatedTravelTime) / totalActualTravelTime;
+			builder.addTrip(r.getPickupTime(), r.getDropoffTime(),
+					map.travelTimeBetween(r.getPickupLocation(), r.getDropoffLocation()));
 		}
+		return builder.build();
 	}
 }
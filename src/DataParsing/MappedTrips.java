@@ -0,0 +1,103 @@
+package DataParsing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import COMSETsystem.LocationOnRoad;
+import COMSETsystem.Road;
+
+/**
+ * A MappedTrips serves the map matched trips of a resource dataset straight from a trip dataset file mapped
+ * into memory (see TripDatasetCache for the file layout). Each column is mapped on its own; the trips are in
+ * the order of their availability times.
+ */
+class MappedTrips {
+
+	private final int size;
+
+	// The roads of the map, indexed by the road indices of the file.
+	private final List<Road> roads;
+
+	private final LongBuffer times;
+	private final LongBuffer dropoffTimes;
+	private final LongBuffer staticTripTimes;
+	private final DoubleBuffer pickupOffsets;
+	private final DoubleBuffer dropoffOffsets;
+	private final IntBuffer pickupRoads;
+	private final IntBuffer dropoffRoads;
+
+	/**
+	 * Constructor of MappedTrips.
+	 *
+	 * @param channel the channel of the trip dataset file
+	 * @param offset the file offset of the first column
+	 * @param size the number of trips
+	 * @param roads the roads of the map, in the order of CityMap.roads(); null if the locations are not read
+	 * @throws IOException if the file cannot be mapped
+	 */
+	MappedTrips(FileChannel channel, long offset, int size, List<Road> roads) throws IOException {
+		this.size = size;
+		this.roads = roads;
+		long longColumnBytes = (long) size * Long.BYTES;
+		long intColumnBytes = (long) size * Integer.BYTES;
+		times = map(channel, offset, longColumnBytes).asLongBuffer();
+		dropoffTimes = map(channel, offset + longColumnBytes, longColumnBytes).asLongBuffer();
+		staticTripTimes = map(channel, offset + 2 * longColumnBytes, longColumnBytes).asLongBuffer();
+		pickupOffsets = map(channel, offset + 3 * longColumnBytes, longColumnBytes).asDoubleBuffer();
+		dropoffOffsets = map(channel, offset + 4 * longColumnBytes, longColumnBytes).asDoubleBuffer();
+		pickupRoads = map(channel, offset + 5 * longColumnBytes, intColumnBytes).asIntBuffer();
+		dropoffRoads = map(channel, offset + 5 * longColumnBytes + intColumnBytes, intColumnBytes).asIntBuffer();
+	}
+
+	private static ByteBuffer map(FileChannel channel, long offset, long bytes) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * @return the number of trips
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the time at which the resource of trip i becomes available
+	 */
+	long time(int i) {
+		return times.get(i);
+	}
+
+	/**
+	 * @return the recorded dropoff time of trip i
+	 */
+	long dropoffTime(int i) {
+		return dropoffTimes.get(i);
+	}
+
+	/**
+	 * @return the travel time of trip i from its pickup location to its dropoff location at speed limits
+	 */
+	long staticTripTime(int i) {
+		return staticTripTimes.get(i);
+	}
+
+	/**
+	 * @return the map matched pickup location of trip i
+	 */
+	LocationOnRoad pickupLocation(int i) {
+		return new LocationOnRoad(roads.get(pickupRoads.get(i)), pickupOffsets.get(i));
+	}
+
+	/**
+	 * @return the map matched dropoff location of trip i
+	 */
+	LocationOnRoad dropoffLocation(int i) {
+		return new LocationOnRoad(roads.get(dropoffRoads.get(i)), dropoffOffsets.get(i));
+	}
+}
@@ -0,0 +1,236 @@
+package DataParsing;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import COMSETsystem.Configuration;
+import COMSETsystem.TrafficPattern;
+
+/**
+ * The TrafficPatternBuilder builds a traffic pattern from the recorded and the static travel times of a set of
+ * trips, as described in MapWithData.buildSlidingTrafficPattern: the speed factor of every epoch window, sliding
+ * by one step at a time, is the total static travel time of the trips picked up and dropped off in the window
+ * divided by their total recorded travel time.
+ * <p>
+ * Rather than collecting the trips of every window from scratch, the builder slides the window over the trips
+ * once: a trip joins the totals when the end of the window passes its dropoff time and leaves them when the
+ * beginning of the window passes its pickup time. The static travel time of a trip is given once, so building
+ * takes time linear in the number of trips and windows once the trips are sorted.
+ * <p>
+ * The builder also runs on its own to print the traffic pattern of a trip dataset cache file (see
+ * TripDatasetCache); run it without arguments for the usage.
+ */
+public class TrafficPatternBuilder {
+
+	// the speed factor of the windows before the first one with trip data
+	private static final double DEFAULT_SPEED_FACTOR = 0.3;
+
+	private final long epoch;
+	private final long step;
+	private final boolean dynamicTraffic;
+
+	// the trips added so far
+	private int size = 0;
+	private long[] pickupTimes = new long[16];
+	private long[] dropoffTimes = new long[16];
+	private long[] staticTripTimes = new long[16];
+
+	// the windows computed by the last call to computeEpochs
+	private int epochCount = 0;
+	private long[] epochBeginTimes = new long[0];
+	private double[] speedFactors = new double[0];
+
+	/**
+	 * Constructor of TrafficPatternBuilder.
+	 *
+	 * @param epoch the length of the window of time that determines a speed factor
+	 * @param step the time by which the window slides, i.e., the resolution of the traffic pattern
+	 * @param dynamicTraffic true if the speed factors are computed from the trips; false if they are all 1
+	 */
+	public TrafficPatternBuilder(long epoch, long step, boolean dynamicTraffic) {
+		this.epoch = epoch;
+		this.step = step;
+		this.dynamicTraffic = dynamicTraffic;
+	}
+
+	/**
+	 * Add a trip.
+	 *
+	 * @param pickupTime the recorded pickup time
+	 * @param dropoffTime the recorded dropoff time
+	 * @param staticTripTime the travel time from the pickup location to the dropoff location at speed limits
+	 */
+	public void addTrip(long pickupTime, long dropoffTime, long staticTripTime) {
+		if (size == pickupTimes.length) {
+			pickupTimes = Arrays.copyOf(pickupTimes, size * 2);
+			dropoffTimes = Arrays.copyOf(dropoffTimes, size * 2);
+			staticTripTimes = Arrays.copyOf(staticTripTimes, size * 2);
+		}
+		pickupTimes[size] = pickupTime;
+		dropoffTimes[size] = dropoffTime;
+		staticTripTimes[size] = staticTripTime;
+		size++;
+	}
+
+	/**
+	 * Build the traffic pattern of the trips added so far.
+	 *
+	 * @return traffic pattern; without any epoch if no trip was added
+	 */
+	public TrafficPattern build() {
+		computeEpochs();
+		TrafficPattern trafficPattern = new TrafficPattern(step);
+		for (int i = 0; i < epochCount; i++) {
+			trafficPattern.addTrafficPatternItem(epochBeginTimes[i], speedFactors[i]);
+		}
+		return trafficPattern;
+	}
+
+	/**
+	 * Compute the beginning time and the speed factor of every window, from the window beginning at the first
+	 * pickup to the first window ending after the last pickup.
+	 */
+	void computeEpochs() {
+		epochCount = 0;
+		if (size == 0) {
+			return;
+		}
+		// a trip counts in a window if it is picked up at or after its beginning and both picked up and dropped
+		// off before its end, i.e., if its end time, the later of the two, is before the end of the window
+		long[] endTimes = new long[size];
+		long lastPickupTime = Long.MIN_VALUE;
+		for (int i = 0; i < size; i++) {
+			endTimes[i] = Math.max(pickupTimes[i], dropoffTimes[i]);
+			lastPickupTime = Math.max(lastPickupTime, pickupTimes[i]);
+		}
+		int[] byPickupTime = sortedIndices(pickupTimes, size);
+		int[] byEndTime = sortedIndices(endTimes, size);
+
+		int epochs = (int) ((lastPickupTime - pickupTimes[byPickupTime[0]]) / step) + 1;
+		epochBeginTimes = new long[epochs];
+		speedFactors = new double[epochs];
+
+		long epochBeginTime = pickupTimes[byPickupTime[0]];
+		long previousEpochEndTime = epochBeginTime;
+		int nextToLeave = 0;
+		int nextToJoin = 0;
+		int tripCount = 0;
+		long totalActualTravelTime = 0;
+		long totalSimulatedTravelTime = 0;
+		double lastKnownSpeedFactor = DEFAULT_SPEED_FACTOR;
+		while (true) {
+			long epochEndTime = epochBeginTime + epoch;
+			// the trips picked up before the window leave it, if they were in the previous window
+			while (nextToLeave < size && pickupTimes[byPickupTime[nextToLeave]] < epochBeginTime) {
+				int trip = byPickupTime[nextToLeave++];
+				if (endTimes[trip] < previousEpochEndTime) {
+					tripCount--;
+					totalActualTravelTime -= dropoffTimes[trip] - pickupTimes[trip];
+					totalSimulatedTravelTime -= staticTripTimes[trip];
+				}
+			}
+			// the trips ending before the end of the window join it, unless picked up before the window
+			while (nextToJoin < size && endTimes[byEndTime[nextToJoin]] < epochEndTime) {
+				int trip = byEndTime[nextToJoin++];
+				if (pickupTimes[trip] >= epochBeginTime) {
+					tripCount++;
+					totalActualTravelTime += dropoffTimes[trip] - pickupTimes[trip];
+					totalSimulatedTravelTime += staticTripTimes[trip];
+				}
+			}
+
+			double speedFactor = 1.0;
+			if (dynamicTraffic) {
+				speedFactor = lastKnownSpeedFactor;
+				// no speed factor without trips or with a total recorded travel time that is not positive
+				if (tripCount > 0 && totalActualTravelTime != 0) {
+					double factor = ((double) totalSimulatedTravelTime) / totalActualTravelTime;
+					if (factor >= 0.0) {
+						// cap speed factor to 1
+						speedFactor = Math.min(factor, 1.0);
+						lastKnownSpeedFactor = speedFactor;
+					}
+				}
+			}
+			if (epochCount == epochBeginTimes.length) {
+				epochBeginTimes = Arrays.copyOf(epochBeginTimes, epochCount * 2);
+				speedFactors = Arrays.copyOf(speedFactors, epochCount * 2);
+			}
+			epochBeginTimes[epochCount] = epochBeginTime;
+			speedFactors[epochCount] = speedFactor;
+			epochCount++;
+
+			if (lastPickupTime < epochEndTime) {
+				break;
+			}
+			previousEpochEndTime = epochEndTime;
+			epochBeginTime += step;
+		}
+	}
+
+	private static int[] sortedIndices(long[] keys, int count) {
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingLong(i -> keys[i]));
+		int[] result = new int[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = order[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of windows computed by computeEpochs
+	 */
+	int epochCount() {
+		return epochCount;
+	}
+
+	/**
+	 * @return the beginning time of window i
+	 */
+	long epochBeginTime(int i) {
+		return epochBeginTimes[i];
+	}
+
+	/**
+	 * @return the speed factor of window i
+	 */
+	double speedFactor(int i) {
+		return speedFactors[i];
+	}
+
+	/**
+	 * Print the traffic pattern of a trip dataset cache file, one line of "epoch begin time,speed factor" per
+	 * window, with times in seconds.
+	 *
+	 * @param args the trip dataset cache file, and optionally the epoch and the step in seconds
+	 */
+	public static void main(String[] args) {
+		if (args.length != 1 && args.length != 3) {
+			System.out.println("Usage: TrafficPatternBuilder <trip dataset cache file> [<epoch> <step>]");
+			System.exit(1);
+		}
+		long epochInSeconds = args.length == 3 ? Long.parseLong(args[1]) : 900;
+		long stepInSeconds = args.length == 3 ? Long.parseLong(args[2]) : 60;
+		try {
+			MappedTrips trips = TripDatasetCache.open(Paths.get(args[0]));
+			TrafficPatternBuilder builder = new TrafficPatternBuilder(epochInSeconds * Configuration.timeResolution,
+					stepInSeconds * Configuration.timeResolution, true);
+			for (int i = 0; i < trips.size(); i++) {
+				builder.addTrip(trips.time(i), trips.dropoffTime(i), trips.staticTripTime(i));
+			}
+			builder.computeEpochs();
+			for (int i = 0; i < builder.epochCount(); i++) {
+				System.out.println(builder.epochBeginTime(i) / Configuration.timeResolution + ","
+						+ builder.speedFactor(i));
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
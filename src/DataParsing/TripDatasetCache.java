@@ -0,0 +1,279 @@
+package DataParsing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import COMSETsystem.Configuration;
+import COMSETsystem.Road;
+
+/**
+ * The TripDatasetCache persists the map matched trips of a resource dataset on disk so that later runs with the
+ * same dataset and map can skip parsing and map matching, and build the resource events from the file mapped
+ * into memory.
+ * <p>
+ * A cache is identified by a SHA-256 digest of the contents of the map input files (i.e., the map JSON file and
+ * the bounding polygon KML file), of the path, size and modification time of the dataset file, of the time
+ * resolution and of any other parameter the trips depend on. Hashing the path and modification time of the
+ * dataset rather than its contents keeps the check cheap for datasets of several gigabytes. The digest
+ * determines the name of the cache file and is also stored in its header, so that a cache created from different
+ * inputs is never used.
+ * <p>
+ * The trips are stored column by column in the order of their availability times. The file layout is, in
+ * little-endian byte order:
+ * <pre>
+ *   int    magic number
+ *   int    format version
+ *   int    number of roads of the map
+ *   int    number of trips n
+ *   byte[] SHA-256 digest of the inputs (32 bytes)
+ *   ...    padding up to HEADER_BYTES
+ *   long   availability times, n entries
+ *   long   recorded dropoff times, n entries
+ *   long   static trip times, n entries
+ *   double pickup distances from the start intersection of the road, n entries
+ *   double dropoff distances from the start intersection of the road, n entries
+ *   int    pickup road indices in CityMap.roads(), n entries
+ *   int    dropoff road indices in CityMap.roads(), n entries
+ * </pre>
+ * Since a single mapping cannot exceed 2GB, a file holds fewer than 2^28 trips.
+ */
+class TripDatasetCache {
+
+	private static final int MAGIC = 0x434D5452; // "CMTR"
+	private static final int VERSION = 1;
+	private static final int DIGEST_BYTES = 32;
+	private static final int HEADER_BYTES = 64;
+	private static final int BYTES_PER_TRIP = 5 * Long.BYTES + 2 * Integer.BYTES;
+	private static final int MAX_TRIPS = Integer.MAX_VALUE / Long.BYTES;
+	private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+	// Full path of the cache file.
+	private final Path file;
+
+	// Digest of the inputs.
+	private final byte[] digest;
+
+	/**
+	 * Constructor of TripDatasetCache.
+	 *
+	 * @param directory the directory holding cache files; created if it does not exist
+	 * @param datasetFile the resource dataset file
+	 * @param parameters the other parameters the map matched trips depend on
+	 * @param mapFiles the files the map is created from
+	 * @throws IOException if an input file cannot be read
+	 */
+	TripDatasetCache(String directory, String datasetFile, String parameters, String... mapFiles)
+			throws IOException {
+		this.digest = digestOf(datasetFile, parameters, mapFiles);
+		StringBuilder name = new StringBuilder("trips-");
+		for (int i = 0; i < 8; i++) {
+			name.append(String.format("%02x", digest[i]));
+		}
+		name.append(".bin");
+		this.file = Paths.get(directory, name.toString());
+	}
+
+	/**
+	 * @return full path of the cache file
+	 */
+	Path file() {
+		return file;
+	}
+
+	/**
+	 * Open the cached trips.
+	 *
+	 * @param roads the roads of the map, in the order of CityMap.roads()
+	 * @return the trips mapped into memory; null if there is no valid cache for the inputs
+	 */
+	MappedTrips load(List<Road> roads) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = readHeader(channel);
+			if (header == null || header.getInt() != roads.size()) {
+				return null;
+			}
+			int size = header.getInt();
+			byte[] storedDigest = new byte[DIGEST_BYTES];
+			header.get(storedDigest);
+			if (!Arrays.equals(storedDigest, digest) || size < 0
+					|| channel.size() != HEADER_BYTES + (long) size * BYTES_PER_TRIP) {
+				return null;
+			}
+			// The mapping stays valid after the channel is closed.
+			return new MappedTrips(channel, HEADER_BYTES, size, roads);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Open a trip dataset cache file whatever the inputs it was created from. Since the roads of its map are not
+	 * known, only the times of the trips can be read.
+	 *
+	 * @param file the trip dataset cache file
+	 * @return the trips mapped into memory
+	 * @throws IOException if the file cannot be read or is not a trip dataset cache file
+	 */
+	static MappedTrips open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = readHeader(channel);
+			if (header == null) {
+				throw new IOException("Not a trip dataset cache file: " + file);
+			}
+			header.getInt(); // the number of roads
+			int size = header.getInt();
+			if (size < 0 || channel.size() != HEADER_BYTES + (long) size * BYTES_PER_TRIP) {
+				throw new IOException("Truncated trip dataset cache file: " + file);
+			}
+			return new MappedTrips(channel, HEADER_BYTES, size, null);
+		}
+	}
+
+	// The header of a file positioned after the format version; null if the file is not of this format version.
+	private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		channel.read(header, 0);
+		header.flip();
+		if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+			return null;
+		}
+		return header;
+	}
+
+	/**
+	 * Write map matched trips to the cache file in the order of their availability times; trips available at the
+	 * same time keep their order. The trips are first written to a temporary file which then replaces the cache
+	 * file, so that an interrupted write never leaves a truncated cache behind.
+	 *
+	 * @param resources the resources of the trips, with their pickup and dropoff locations set
+	 * @param staticTripTimes the static trip time of each resource
+	 * @param roads the roads of the map, in the order of CityMap.roads()
+	 * @throws IOException if the cache file cannot be written
+	 */
+	void store(List<Resource> resources, long[] staticTripTimes, List<Road> roads) throws IOException {
+		int size = resources.size();
+		if (size > MAX_TRIPS) {
+			throw new IOException("Too many trips to cache: " + size);
+		}
+		Map<Road, Integer> roadIndices = new IdentityHashMap<>();
+		for (int i = 0; i < roads.size(); i++) {
+			roadIndices.put(roads.get(i), i);
+		}
+		Integer[] boxedOrder = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			boxedOrder[i] = i;
+		}
+		Arrays.sort(boxedOrder, Comparator.comparingLong(i -> resources.get(i).getTime()));
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = boxedOrder[i];
+		}
+
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), "trips-", ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.putInt(MAGIC).putInt(VERSION).putInt(roads.size()).putInt(size).put(digest);
+				buffer.position(HEADER_BYTES);
+				writeColumn(channel, buffer, size, Long.BYTES,
+						(b, i) -> b.putLong(resources.get(order[i]).getTime()));
+				writeColumn(channel, buffer, size, Long.BYTES,
+						(b, i) -> b.putLong(resources.get(order[i]).getDropoffTime()));
+				writeColumn(channel, buffer, size, Long.BYTES,
+						(b, i) -> b.putLong(staticTripTimes[order[i]]));
+				writeColumn(channel, buffer, size, Double.BYTES, (b, i) -> b.putDouble(
+						resources.get(order[i]).getPickupLocation().getDistanceFromStartIntersection()));
+				writeColumn(channel, buffer, size, Double.BYTES, (b, i) -> b.putDouble(
+						resources.get(order[i]).getDropoffLocation().getDistanceFromStartIntersection()));
+				writeColumn(channel, buffer, size, Integer.BYTES,
+						(b, i) -> b.putInt(roadIndices.get(resources.get(order[i]).getPickupLocation().road)));
+				writeColumn(channel, buffer, size, Integer.BYTES,
+						(b, i) -> b.putInt(roadIndices.get(resources.get(order[i]).getDropoffLocation().road)));
+				flush(channel, buffer);
+				assert channel.size() == HEADER_BYTES + (long) size * BYTES_PER_TRIP;
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Puts the value of a trip into a write buffer.
+	 */
+	private interface ColumnWriter {
+		void put(ByteBuffer buffer, int trip);
+	}
+
+	private static void writeColumn(FileChannel channel, ByteBuffer buffer, int size, int bytes,
+									ColumnWriter writer) throws IOException {
+		for (int i = 0; i < size; i++) {
+			if (buffer.remaining() < bytes) {
+				flush(channel, buffer);
+			}
+			writer.put(buffer, i);
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Compute the SHA-256 digest of the inputs and the format version.
+	 */
+	private static byte[] digestOf(String datasetFile, String parameters, String... mapFiles) throws IOException {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		md.update(ByteBuffer.allocate(Integer.BYTES + Long.BYTES).putInt(VERSION)
+				.putLong(Configuration.timeResolution).array());
+		Path dataset = Paths.get(datasetFile).toAbsolutePath();
+		md.update(dataset.toString().getBytes(StandardCharsets.UTF_8));
+		md.update(ByteBuffer.allocate(2 * Long.BYTES).putLong(Files.size(dataset))
+				.putLong(Files.getLastModifiedTime(dataset).toMillis()).array());
+		byte[] parameterBytes = parameters.getBytes(StandardCharsets.UTF_8);
+		md.update(ByteBuffer.allocate(Integer.BYTES).putInt(parameterBytes.length).array());
+		md.update(parameterBytes);
+		byte[] buffer = new byte[1 << 16];
+		for (String mapFile : mapFiles) {
+			// prefix each file with its length so that the digest tells where one file ends and the next begins
+			md.update(ByteBuffer.allocate(Long.BYTES).putLong(Files.size(Paths.get(mapFile))).array());
+			try (InputStream in = Files.newInputStream(Paths.get(mapFile))) {
+				int n;
+				while ((n = in.read(buffer)) > 0) {
+					md.update(buffer, 0, n);
+				}
+			}
+		}
+		return md.digest();
+	}
+}
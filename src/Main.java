@@ -112,6 +112,46 @@ public class Main {
                 agentPlacementSeed = random.nextLong();
             }
 
+            String pathTableCacheDirectory = prop.getProperty("comset.path_table_cache_dir");
+            if (pathTableCacheDirectory != null) {
+                pathTableCacheDirectory = pathTableCacheDirectory.trim();
+                if (pathTableCacheDirectory.isEmpty()) {
+                    pathTableCacheDirectory = null;
+                }
+            }
+
+            String datasetCacheDirectory = prop.getProperty("comset.dataset_cache_dir");
+            if (datasetCacheDirectory != null) {
+                datasetCacheDirectory = datasetCacheDirectory.trim();
+                if (datasetCacheDirectory.isEmpty()) {
+                    datasetCacheDirectory = null;
+                }
+            }
+
+            Configuration.PathTableType pathTableType = Configuration.PathTableType.DENSE;
+            String pathTableTypeArg = prop.getProperty("comset.path_table");
+            if (pathTableTypeArg != null) {
+                pathTableType = Configuration.PathTableType.valueOf(pathTableTypeArg.trim().toUpperCase());
+            }
+
+            long pathTableMemoryBudget = 1024; // in megabytes
+            String pathTableMemoryBudgetArg = prop.getProperty("comset.path_table_memory_budget");
+            if (pathTableMemoryBudgetArg != null) {
+                pathTableMemoryBudget = Long.parseLong(pathTableMemoryBudgetArg.trim());
+            }
+
+            Configuration.EventQueueType eventQueueType = Configuration.EventQueueType.HEAP;
+            String eventQueueTypeArg = prop.getProperty("comset.event_queue");
+            if (eventQueueTypeArg != null) {
+                eventQueueType = Configuration.EventQueueType.valueOf(eventQueueTypeArg.trim().toUpperCase());
+            }
+
+            long batchDispatchWindow = 0;
+            String batchDispatchWindowArg = prop.getProperty("comset.batch_dispatch_window");
+            if (batchDispatchWindowArg != null) {
+                batchDispatchWindow = Long.parseLong(batchDispatchWindowArg.trim());
+            }
+
             if (!displayLogging) {
                 LogManager.getLogManager().reset();
             }
@@ -121,7 +161,9 @@ public class Main {
             Configuration.make((Class<? extends FleetManager>) fleetManagerClass,
                     mapJSONFile, datasetFile, numberOfAgents, boundingPolygonKMLFile,
                     resourceMaximumLifeTime, agentPlacementSeed, dynamicTraffic, trafficPatternEpoch,
-                    trafficPatternStep);
+                    trafficPatternStep, pathTableCacheDirectory, pathTableType,
+                    pathTableMemoryBudget * 1024 * 1024, eventQueueType, batchDispatchWindow,
+                    datasetCacheDirectory);
 
             Simulator simulator = new Simulator(Configuration.get());
 
@@ -2,7 +2,7 @@ package MapCreation;
 
 import COMSETsystem.*;
 import DataParsing.GeoProjector;
-import DataParsing.KdTree;
+import DataParsing.LinkIndex;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
@@ -674,12 +674,11 @@ public class MapCreator {
 	 * @return an instance of CityMap
 	 */
 	public CityMap outputCityMap() {
-		KdTree kdTree = new KdTree();
+		List<Link> links = new ArrayList<>();
 		for (Vertex vertex : vertices.values()) {
-			for (Link link : vertex.getLinksFrom()) {
-				kdTree.insert(link);	
-			}			
+			links.addAll(vertex.getLinksFrom());
 		}
+		LinkIndex linkIndex = new LinkIndex(links);
 		List<Road> roads = new ArrayList<>();
 		for (Intersection inter : intersections.values()) {
 			roads.addAll(inter.getRoadsFrom());
@@ -688,7 +687,7 @@ public class MapCreator {
 		for (Road road : roads) {
 			road.setSpeed();
 		}
-		return new CityMap(intersections, roads, projector, kdTree);
+		return new CityMap(intersections, roads, projector, linkIndex);
 	}
 
 	public List<double[]> boundingPolygon() {
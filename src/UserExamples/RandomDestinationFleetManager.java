@@ -3,52 +3,35 @@ package UserExamples;
 import COMSETsystem.*;
 import UserExamples.TemporalUtils;
 import com.uber.h3core.H3Core;
-import com.uber.h3core.exceptions.DistanceUndefinedException;
 
 import java.io.*;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
 
 public class RandomDestinationFleetManager extends FleetManager {
     H3Core h3;
     private final int h3_resolution = 4;
     private TemporalUtils temporalUtils;
-    private final Map<String, List<Intersection>> regionIntersectionMap = new HashMap<>();
-    private final Map<String, Float> regionResourceMap = new HashMap<>();
-    private final Map<String, List<Integer>> regionResourceTimeStamp = new HashMap<>();
-    private final Map<String, List<Integer>> regionDestinationTimeStamp = new HashMap<>();
-    private final List<String> regionList = new ArrayList<>();
+    // The H3 cells of the map, with their resource weights and predicted pickups and drop-offs indexed by region
+    private RegionIndex regions;
+    private float[] regionWeights;
+    private boolean[] regionWeighted;
+    private float[][] regionTemporalWeights;
+    private final List<Long> regionList = new ArrayList<>();
+    // Samplers of destination regions by their fixed and predicted weights
+    private RegionSampler frequencySampler;
+    private RegionSampler temporalSampler;
     private final Map<Long, List<Resource>> agentResourceHistory = new HashMap<>();
     private final Map<Long, Long> agentBusyTime = new HashMap<>();
     private final Map<Long, Long> agentIdleTime = new HashMap<>();
     private final Map<Long, Long> agentBusyTimer = new HashMap<>();
     private final Map<Long, Long> agentIdleTimer = new HashMap<>();
-    private final Map<Long, Long> agentLastAppearTime = new HashMap<>();
-    private final Map<Long, LocationOnRoad> agentLastLocation = new HashMap<>();
-    private final Map<Long, Resource> resourceAssignment = new HashMap<>();
+    // The last appearance, assigned resource and availability of each agent
+    private final AgentStateStore agents = new AgentStateStore();
     private final Set<Resource> waitingResources = new TreeSet<>(Comparator.comparingLong((Resource r) -> r.id));
-    private final Set<Long> availableAgent = new TreeSet<>(Comparator.comparingLong((Long id) -> id));
     private final Map<Long, Random> agentRnd = new HashMap<>();
 
     Map<Long, LinkedList<Intersection>> agentRoutes = new HashMap<>();
 
-    private void populateRegionIntersecitonMap(){
-        for(Intersection i : map.intersections().values()){
-            double lat = i.latitude;
-            double lng = i.longitude;
-            String hexAddr = h3.geoToH3Address(lat, lng, h3_resolution);
-            List<Integer> intersectionResource = new ArrayList<>();
-            if (regionIntersectionMap.containsKey(hexAddr)){
-                regionIntersectionMap.get(hexAddr).add(i);
-            }
-            else {
-                List<Intersection> localVar = new ArrayList<>();
-                localVar.add(i);
-                regionIntersectionMap.put(hexAddr, localVar);
-            }
-        }
-    }
-
     private void readRegionFrequencyFile(String fileName){
         File file = new File(fileName);
         BufferedReader reader = null;
@@ -57,6 +40,8 @@ public class RandomDestinationFleetManager extends FleetManager {
         } catch (FileNotFoundException e) {
             e.printStackTrace();
         }
+        regionWeights = new float[regions.regionCount()];
+        regionWeighted = new boolean[regions.regionCount()];
         String tempString = null;
         while(true) {
             try {
@@ -65,16 +50,26 @@ public class RandomDestinationFleetManager extends FleetManager {
                 e.printStackTrace();
             }
             String[] elements = tempString.split(":");
-            regionResourceMap.put(elements[0], Float.parseFloat(elements[1]));
+            int region = regions.regionOf(h3.stringToH3(elements[0]));
+            if (region >= 0) {
+                regionWeights[region] = Float.parseFloat(elements[1]);
+                regionWeighted[region] = true;
+            }
         }
     }
 
-    private void readPickupMatrix(String fileName){
+    /**
+     * Read a matrix of predicted counts with a row per time interval and a column per region of the region list.
+     *
+     * @return the column of each region of the map; null for the regions that are not in the region list
+     */
+    private int[][] readTimeStampMatrix(String fileName){
+        List<List<Integer>> columns = new ArrayList<>();
+        for (int i = 0; i < regionList.size(); i++)
+            columns.add(new ArrayList<>());
         try{
             File file = new File(fileName);
             BufferedReader reader = new BufferedReader(new FileReader(file));
-            for (String item : regionList)
-                regionResourceTimeStamp.put(item, new ArrayList<Integer>());
             String tmp = null;
             while ((tmp = reader.readLine()) != null){
                 String[] regionData = tmp.split(",");
@@ -82,47 +77,22 @@ public class RandomDestinationFleetManager extends FleetManager {
                     System.out.println("Size of Region list and region data: " + regionList.size()
                             + ", " + regionData.length);
                 }
-                for(int i=0; i<regionData.length; i++){
-                    if (i < regionList.size()){
-                        String region_hex = regionList.get(i);
-                        regionResourceTimeStamp.get(region_hex).add((int)Double.parseDouble(regionData[i]));
-                    }
-                    else {
-                        int a = 1;
-//                        System.out.println("Region not found in region list for index: " + i);
-                    }
+                for(int i=0; i<regionData.length && i < regionList.size(); i++){
+                    columns.get(i).add((int)Double.parseDouble(regionData[i]));
                 }
             }
             reader.close();
         }catch (Exception ex){
             ex.printStackTrace();
         }
-    }
-
-    private void readDropOffMatrix(String fileName){
-        try{
-            File file = new File(fileName);
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            for (String item : regionList)
-                regionDestinationTimeStamp.put(item, new ArrayList<Integer>());
-            String tmp = null;
-            while ((tmp = reader.readLine()) != null){
-                String[] regionData = tmp.split(",");
-                if (regionList.size() < regionData.length) {
-                    System.out.println("Size of Region list and region data: " + regionList.size()
-                            + ", " + regionData.length);
-                }
-                for(int i=0; i<regionData.length; i++){
-                    if (i < regionList.size()) {
-                        String region_hex = regionList.get(i);
-                        regionDestinationTimeStamp.get(region_hex).add((int) Double.parseDouble(regionData[i]));
-                    }
-                }
+        int[][] matrix = new int[regions.regionCount()][];
+        for (int i = 0; i < regionList.size(); i++) {
+            int region = regions.regionOf(regionList.get(i));
+            if (region >= 0) {
+                matrix[region] = columns.get(i).stream().mapToInt(Integer::intValue).toArray();
             }
-            reader.close();
-        }catch (Exception ex){
-            ex.printStackTrace();
         }
+        return matrix;
     }
 
     private void readRegionList(String fileName) {
@@ -131,7 +101,7 @@ public class RandomDestinationFleetManager extends FleetManager {
             BufferedReader reader = new BufferedReader(new FileReader(file));
             String tmp = null;
             while ((tmp = reader.readLine()) != null) {
-                regionList.add(tmp);
+                regionList.add(h3.stringToH3(tmp));
             }
             reader.close();
         }catch (Exception ex){
@@ -148,9 +118,9 @@ public class RandomDestinationFleetManager extends FleetManager {
      */
     @Override
     public void onAgentIntroduced(long agentId, LocationOnRoad currentLoc, long time) {
-        agentLastAppearTime.put(agentId, time);
-        agentLastLocation.put(agentId, currentLoc);
-        availableAgent.add(agentId);
+        int slot = agents.slot(agentId);
+        agents.setLastAppearance(slot, time, currentLoc);
+        agents.setAvailable(slot, true);
         agentIdleTimer.put(agentId, time);
     }
 
@@ -206,9 +176,10 @@ public class RandomDestinationFleetManager extends FleetManager {
         if (state == ResourceState.AVAILABLE) {
             Long assignedAgent = getNearestAvailableAgent(resource, time);
             if (assignedAgent != null) {
-                resourceAssignment.put(assignedAgent, resource);
+                int slot = agents.slot(assignedAgent);
+                agents.setAssignedResource(slot, resource);
                 agentRoutes.put(assignedAgent, new LinkedList<>());
-                availableAgent.remove(assignedAgent);
+                agents.setAvailable(slot, false);
                 action = AgentAction.assignTo(assignedAgent, resource.id);
                 if (agentIdleTimer.containsKey(assignedAgent)){
                     long start = agentIdleTimer.remove(assignedAgent);
@@ -243,10 +214,8 @@ public class RandomDestinationFleetManager extends FleetManager {
             for (Resource res : waitingResources) {
                 // If res is in waitingResources, then it must have not expired yet
                 // testing null pointer exception
-                // Warning: map.travelTimeBetween returns the travel time based on speed limits, not
-                // the dynamic travel time. Thus the travel time returned by map.travelTimeBetween may be different
-                // than the actual travel time.
-                long travelTime = map.travelTimeBetween(currentLoc, res.pickupLoc);
+                // dynamic travel time at the current time of day
+                long travelTime = travelTimeBetween(currentLoc, res.pickupLoc, time);
 
                 // if the resource is reachable before expiration
                 long arriveTime = time + travelTime;
@@ -257,24 +226,25 @@ public class RandomDestinationFleetManager extends FleetManager {
 
             }
 
+            int slot = agents.slot(resource.assignedAgentId);
             if (bestResource != null) {
                 waitingResources.remove(bestResource);
                 action = AgentAction.assignTo(resource.assignedAgentId, bestResource.id);
                 agentBusyTimer.put(resource.assignedAgentId, time);
             } else {
-                availableAgent.add(resource.assignedAgentId);
+                agents.setAvailable(slot, true);
                 agentIdleTimer.put(resource.assignedAgentId, time);
                 action = AgentAction.doNothing();
             }
-            resourceAssignment.put(resource.assignedAgentId, bestResource);
-            agentLastLocation.put(resource.assignedAgentId, currentLoc);
-            agentLastAppearTime.put(resource.assignedAgentId, time);
+            agents.setAssignedResource(slot, bestResource);
+            agents.setLastAppearance(slot, time, currentLoc);
         } else if (state == ResourceState.EXPIRED) {
             waitingResources.remove(resource);
             if (resource.assignedAgentId != -1) {
                 agentRoutes.put(resource.assignedAgentId, new LinkedList<>());
-                availableAgent.add(resource.assignedAgentId);
-                resourceAssignment.remove(resource.assignedAgentId);
+                int slot = agents.slot(resource.assignedAgentId);
+                agents.setAvailable(slot, true);
+                agents.setAssignedResource(slot, null);
             }
         } else if (state == ResourceState.PICKED_UP) {
             agentRoutes.put(resource.assignedAgentId, new LinkedList<>());
@@ -299,7 +269,8 @@ public class RandomDestinationFleetManager extends FleetManager {
         if (agentId == 240902L && time == 1464800008L) {
             System.out.println("here");
         }
-        agentLastAppearTime.put(agentId, time);
+        int slot = agents.slot(agentId);
+        agents.setLastAppearTime(slot, time);
 
         LinkedList<Intersection> route = agentRoutes.getOrDefault(agentId, new LinkedList<>());
 
@@ -311,7 +282,7 @@ public class RandomDestinationFleetManager extends FleetManager {
         Intersection nextLocation = route.poll();
         Road nextRoad = currentLoc.road.to.roadTo(nextLocation);
         LocationOnRoad locationOnRoad = LocationOnRoad.createFromRoadStart(nextRoad);
-        agentLastLocation.put(agentId, locationOnRoad);
+        agents.setLastLocation(slot, locationOnRoad);
         return nextLocation;
     }
 
@@ -327,7 +298,8 @@ public class RandomDestinationFleetManager extends FleetManager {
     @Override
     public Intersection onReachIntersectionWithResource(long agentId, long time, LocationOnRoad currentLoc,
                                                         Resource resource) {
-        agentLastAppearTime.put(agentId, time);
+        int slot = agents.slot(agentId);
+        agents.setLastAppearTime(slot, time);
 
         LinkedList<Intersection> route = agentRoutes.getOrDefault(agentId, new LinkedList<>());
 
@@ -339,25 +311,24 @@ public class RandomDestinationFleetManager extends FleetManager {
         Intersection nextLocation = route.poll();
         Road nextRoad = currentLoc.road.to.roadTo(nextLocation);
         LocationOnRoad locationOnRoad = LocationOnRoad.createFromRoadStart(nextRoad);
-        agentLastLocation.put(agentId, locationOnRoad);
+        agents.setLastLocation(slot, locationOnRoad);
         return nextLocation;
     }
 
     Long getNearestAvailableAgent(Resource resource, long currentTime) {
-        long earliest = Long.MAX_VALUE;
+        // the eligible agent with the lowest score; ties go to the lowest id
         Long bestAgent = null;
-        List<RandomDestinationFleetManager.Tuple> eligibleAgents = new ArrayList<>();
-        for (Long id : availableAgent) {
-            if (!agentLastLocation.containsKey(id)) continue;
+        float bestScore = 0;
+        for (int i = 0; i < agents.availableCount(); i++) {
+            int slot = agents.availableSlot(i);
+            long id = agents.agentId(slot);
 
             LocationOnRoad curLoc = getCurrentLocation(
-                    agentLastAppearTime.get(id),
-                    agentLastLocation.get(id),
+                    agents.lastAppearTime(slot),
+                    agents.lastLocation(slot),
                     currentTime);
-            // Warning: map.travelTimeBetween returns the travel time based on speed limits, not
-            // the dynamic travel time. Thus the travel time returned by map.travelTimeBetween may be different
-            // than the actual travel time.
-            long travelTime = map.travelTimeBetween(curLoc, resource.pickupLoc);
+            // dynamic travel time at the current time of day
+            long travelTime = travelTimeBetween(curLoc, resource.pickupLoc, currentTime);
             long arriveTime = travelTime + currentTime;
             int numberOfRides;
             if (GlobalParameters.agent_assignment == GlobalParameters.agentAssignmentPolicy.Nearest){
@@ -372,31 +343,18 @@ public class RandomDestinationFleetManager extends FleetManager {
             else
                 numberOfRides = -1;
             if (arriveTime <= resource.expirationTime) {
-                eligibleAgents.add(new RandomDestinationFleetManager.Tuple(id.toString(), arriveTime * numberOfRides));
-            }
-        }
-        if (eligibleAgents.size() > 0) {
-            eligibleAgents.sort(new Comparator<RandomDestinationFleetManager.Tuple>() {
-                @Override
-                public int compare(RandomDestinationFleetManager.Tuple o1, RandomDestinationFleetManager.Tuple o2) {
-                    if (o1.val > o2.val) {
-                        return 1;
-                    } else if (o1.val < o2.val) {
-                        return -1;
-                    } else {
-                        return 0;
-                    }
+                float score = arriveTime * numberOfRides;
+                if (bestAgent == null || score < bestScore || (score == bestScore && id < bestAgent)) {
+                    bestAgent = id;
+                    bestScore = score;
                 }
-            });
-//            System.out.println("Eligible Agents: " + eligibleAgents);
-            return Long.parseLong(eligibleAgents.get(0).key);
+            }
         }
-        else
-            return null;
+        return bestAgent;
     }
 
     LinkedList<Intersection> planRoute(long agentId, LocationOnRoad currentLocation, long time) {
-        Resource assignedRes = resourceAssignment.get(agentId);
+        Resource assignedRes = agents.assignedResource(agents.slot(agentId));
 
         if (assignedRes != null) {
             Intersection sourceIntersection = currentLocation.road.to;
@@ -445,120 +403,45 @@ public class RandomDestinationFleetManager extends FleetManager {
         return latLon;
     }
 
-    private float getRegionWeight(String h3_code){
-        if (regionResourceMap.containsKey(h3_code)){
-            return regionResourceMap.get(h3_code);
-        }
-        else {
-//            System.out.println("Could not find the region in the resource map: " + h3_code);
-            return 1;
-        }
-    }
-
-    private Map<String, Float> calculate_probabilities(String source_h3, Map<String, Double> region_resource){
-        Map<String, Float> region_cumulative = new HashMap<>();
-        float sum = 0;
-        for(String candidate_region : region_resource.keySet()){
-            double candidate_resource = region_resource.get(candidate_region);
-            int distance;
-            try {
-                distance = h3.h3Distance(source_h3, candidate_region);
-            } catch (DistanceUndefinedException e) {
-                e.printStackTrace();
-                distance = 1; // XXX
+    private long getLocationCell(LocationOnRoad location){
+        if (location.atEndIntersection()) {
+            // the common case of an agent at an intersection needs no H3 call
+            int region = regions.regionOf(location.road.to);
+            if (region >= 0) {
+                return regions.cell(region);
             }
-//            System.out.println("Distance between regions " + source_h3 + ", " + candidate_region + ": " + distance);
-            float netValue = (float) candidate_resource/(distance + 1) ;
-            sum += netValue;
-            region_cumulative.put(candidate_region, netValue);
-        }
-        // calculate probabilities at this point.
-        for (String candidate_region : region_cumulative.keySet()){
-            float candidate_val = region_cumulative.get(candidate_region);
-            region_cumulative.put(candidate_region, candidate_val/sum);
         }
-        return region_cumulative;
+        double[] latLon = getLocationLatLon(location);
+        return regions.cellOf(latLon[0], latLon[1]);
     }
 
-    class Tuple{
-        public String key;
-        public float val;
-
-        public Tuple(String _key, float _val){
-            this.key = _key;
-            this.val = _val;
-        }
-
-        public String toString() {
-            return this.key + ":" + this.val;
+    private float getRegionWeight(int region){
+        if (regionWeighted[region]){
+            return regionWeights[region];
         }
-    }
-
-    private String sample_regions(Map<String, Float> regionProbabilities){
-        ArrayList<RandomDestinationFleetManager.Tuple> region_list = new ArrayList<>();
-        for (String region : regionProbabilities.keySet()){
-            Float val = regionProbabilities.get(region);
-            RandomDestinationFleetManager.Tuple t = new RandomDestinationFleetManager.Tuple(region, val);
-            region_list.add(t);
-        }
-        region_list.sort(new Comparator<RandomDestinationFleetManager.Tuple>() {
-            @Override
-            public int compare(RandomDestinationFleetManager.Tuple o1, RandomDestinationFleetManager.Tuple o2) {
-                if (o1.val > o2.val){
-                    return 1;
-                }
-                else if (o1.val < o2.val) {
-                    return -1;
-                }
-                else {
-                    return 0;
-                }
-            }
-        });
-//        System.out.println("Region List: " + region_list);
-        double randomNum = ThreadLocalRandom.current().nextDouble(0, 1);
-//        System.out.println("random number: " + randomNum);
-        float sum = 0;
-        for (RandomDestinationFleetManager.Tuple t : region_list) {
-            sum += t.val;
-            if (sum >= randomNum) {
-                return t.key;
-            }
+        else {
+//            System.out.println("Could not find the region in the resource map: " + regions.cell(region));
+            return 1;
         }
-        return null;
     }
 
-    private Intersection selectIntersection(String h3_code){
-        if (regionIntersectionMap.containsKey(h3_code)){
-            List<Intersection> intersectionList = regionIntersectionMap.get(h3_code);
-            int randomNum = ThreadLocalRandom.current().nextInt(0, intersectionList.size());
-            return intersectionList.get(randomNum);
+    private Intersection selectIntersection(int region){
+        if (region >= 0){
+            Intersection[] intersections = regions.intersections(region);
+            int randomNum = random().nextInt(intersections.length);
+            return intersections[randomNum];
         }
         else {
-            System.out.println("Warning h3code not found: " + h3_code);
+            System.out.println("Warning no region selected");
             return null;
         }
     }
 
-    private double getRegionWeightTemporal(String region_h3, long time){
-        int timeIndex = temporalUtils.findTimeIntervalIndex(time);
-        int k = GlobalParameters.timeHorizon / GlobalParameters.timeInterval;
-        double weight = 1.0;
-        List<Integer> resourceTimeStamp = regionResourceTimeStamp.get(region_h3);
-        List<Integer> destinationTimeStamp = regionDestinationTimeStamp.get(region_h3);
-        if (resourceTimeStamp == null | destinationTimeStamp == null){
-            weight =  1;
-            return weight;
-        }
-        else {
-            for (int i = timeIndex; i < timeIndex + k; i++) {
-                if (i < resourceTimeStamp.size())
-                    weight += Math.pow(0.8, i - timeIndex) * (resourceTimeStamp.get(i) - GlobalParameters.lambda * destinationTimeStamp.get(i));
-            }
-            if (weight < 0)
-                weight = 1.0;
-            return weight;
-        }
+    private double getRegionWeightTemporal(int region, int timeIndex){
+        float[] weights = regionTemporalWeights == null ? null : regionTemporalWeights[region];
+        if (weights == null || timeIndex < 0 || timeIndex >= weights.length)
+            return 1.0;
+        return weights[timeIndex];
     }
 
     LinkedList<Intersection> getRandomRoute(long agentId, LocationOnRoad currentLocation) {
@@ -585,51 +468,13 @@ public class RandomDestinationFleetManager extends FleetManager {
 
     LinkedList<Intersection> getFrequencyTemporalRoute(long agentId, LocationOnRoad currentLoc, long time) {
         //        System.out.println("finding next intersection for: " + agentId);
-        double[] latLon = getLocationLatLon(currentLoc);
-        String hexAddr = h3.geoToH3Address(latLon[0], latLon[1], h3_resolution);
-//        System.out.println("finding next intersection for region: " + hexAddr);
-        List<String> nearest_h3 = new ArrayList<>();
-        if (regionIntersectionMap.containsKey(hexAddr)) {
-            List<String> candidate_h3 = h3.kRing(hexAddr, 1);
-            for (String region: candidate_h3) {
-                if (region.equals(hexAddr)) {
-                    continue;
-                }
-                if (regionIntersectionMap.containsKey(region)) {
-                    nearest_h3.add(region);
-                } else {
-                    int a = 1;
-//                    System.out.println("Ignoring the absent region: " + region);
-                }
-            }
-        }
-        else {
-//            System.out.println("Region not found: " + hexAddr);
-            int radius = 2;
-            do {
-                List<String> candidate_regions = h3.kRing(hexAddr, radius);
-                for (String reg : candidate_regions){
-                    if (reg.equals(hexAddr)) {
-                        continue;
-                    }
-                    if (regionIntersectionMap.containsKey(reg)){
-                        nearest_h3.add(reg);
-                    }
-                }
-                radius += 2 * radius;
-            }while (nearest_h3.size() == 0);
-        }
-        Map<String, Double> region_map = new HashMap<>();
-        for (String nearest_region : nearest_h3){
-            double resource_estimate = getRegionWeightTemporal(nearest_region, time);
-            region_map.put(nearest_region, resource_estimate);
+        int timeIndex = temporalUtils.findTimeIntervalIndex(time);
+        int selected = temporalSampler.sample(getLocationCell(currentLoc), timeIndex, random());
+        Intersection selected_intersection = selectIntersection(selected);
+        if (selected_intersection == null) {
+            // no region to head for, e.g., a map without regions
+            return getRandomRoute(agentId, currentLoc);
         }
-//        System.out.println("Candidate Resource: " + region_map);
-        Map<String, Float> h3_probabilities = calculate_probabilities(hexAddr, region_map);
-//        System.out.println("Region Probabilities: " + h3_probabilities);
-        String h3_selected = sample_regions(h3_probabilities);
-//        System.out.println("next region: " + h3_selected);
-        Intersection selected_intersection = selectIntersection(h3_selected);
 //        System.out.println("next intersection: " + selected_intersection.id);
         Intersection sourceIntersection = currentLoc.road.to;
         LinkedList<Intersection> path = map.shortestTravelTimePath(sourceIntersection, selected_intersection);
@@ -643,54 +488,12 @@ public class RandomDestinationFleetManager extends FleetManager {
     LinkedList<Intersection> getFrequencyRoute(long agentId, LocationOnRoad currentLoc) {
 
 //        System.out.println("finding next intersection for: " + agentId);
-        double[] latLon = getLocationLatLon(currentLoc);
-        String hexAddr = h3.geoToH3Address(latLon[0], latLon[1], h3_resolution);
-//        System.out.println("finding next intersection for region: " + hexAddr);
-        List<String> nearest_h3 = new ArrayList<>();
-        if (regionIntersectionMap.containsKey(hexAddr)) {
-            List<String> candidate_h3 = h3.kRing(hexAddr, 1);
-//            System.out.println("candidate h3: " + candidate_h3);
-            for (String region: candidate_h3) {
-                if (region.equals(hexAddr)) {
-                    continue;
-                }
-                if (regionIntersectionMap.containsKey(region)) {
-                    nearest_h3.add(region);
-                } else {
-                    int a = 1;
-//                    System.out.println("Ignoring the absent region in intersection region: " + region);
-                }
-            }
-        }
-//        else
-//            System.out.println("Region not found: " + hexAddr);
-        if (nearest_h3.size() == 0) {
-            int radius = 2;
-            do {
-                List<String> candidate_regions = h3.kRing(hexAddr, radius);
-                for (String reg : candidate_regions){
-                    if (reg.equals(hexAddr)) {
-                        continue;
-                    }
-                    if (regionIntersectionMap.containsKey(reg)){
-                        nearest_h3.add(reg);
-                    }
-                }
-                radius += 2 * radius;
-            }while (nearest_h3.size() == 0);
-        }
-//        System.out.println("Nearest Regions: " + nearest_h3);
-        Map<String, Double> region_map = new HashMap<>();
-        for (String nearest_region : nearest_h3){
-            double resource_estimate = getRegionWeight(nearest_region);
-            region_map.put(nearest_region, resource_estimate);
+        int selected = frequencySampler.sample(getLocationCell(currentLoc), 0, random());
+        Intersection selected_intersection = selectIntersection(selected);
+        if (selected_intersection == null) {
+            // no region to head for, e.g., a map without regions
+            return getRandomRoute(agentId, currentLoc);
         }
-//        System.out.println("Candidate Resource: " + region_map);
-        Map<String, Float> h3_probabilities = calculate_probabilities(hexAddr, region_map);
-//        System.out.println("Region Probabilities: " + h3_probabilities);
-        String h3_selected = sample_regions(h3_probabilities);
-//        System.out.println("next region: " + h3_selected);
-        Intersection selected_intersection = selectIntersection(h3_selected);
 //        System.out.println("next intersection: " + selected_intersection.id);
         Intersection sourceIntersection = currentLoc.road.to;
         LinkedList<Intersection> path = map.shortestTravelTimePath(sourceIntersection, selected_intersection);
@@ -708,11 +511,14 @@ public class RandomDestinationFleetManager extends FleetManager {
         }catch (IOException ex){
             ex.printStackTrace();
         }
-        populateRegionIntersecitonMap();
+        regions = new RegionIndex(h3, h3_resolution, map);
         readRegionFrequencyFile(GlobalParameters.region_frequency);
+        frequencySampler = new RegionSampler(regions, (region, timeIndex) -> getRegionWeight(region));
+        temporalSampler = new RegionSampler(regions, this::getRegionWeightTemporal);
 //        temporalUtils = new TemporalUtils(map.computeZoneId());
-//        readPickupMatrix(GlobalParameters.pickup_pred_file);
-//        readDropOffMatrix(GlobalParameters.dropoff_pred_file);
 //        readRegionList(GlobalParameters.regions_list);
+//        regionTemporalWeights = TemporalUtils.decayedHorizonWeights(
+//                readTimeStampMatrix(GlobalParameters.pickup_pred_file),
+//                readTimeStampMatrix(GlobalParameters.dropoff_pred_file));
     }
 }
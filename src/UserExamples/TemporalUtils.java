@@ -5,6 +5,7 @@ import COMSETsystem.Configuration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 
 /**
  * This is for getting the time interval index of current timestamp
@@ -15,6 +16,14 @@ public class TemporalUtils {
     ZonedDateTime end;
     int numOfTimeInterval;
 
+    // The time interval indices and intersection time interval indices of filledMinutes consecutive minutes
+    // from firstMinute, in minutes since the epoch.
+    private static final long MAX_TABLE_MINUTES = 366L * 24 * 60;
+    private long firstMinute;
+    private int filledMinutes = 0;
+    private int[] intervalIndices = new int[0];
+    private int[] intersectionIndices = new int[0];
+
     public TemporalUtils(ZoneId zoneId){
         System.out.println("ZoneID: " + zoneId);
         zone = zoneId;
@@ -31,51 +40,17 @@ public class TemporalUtils {
         return ZonedDateTime.now();
     }
 
+    /**
+     * Call this method to get the index of intersection time interval for current time
+     * @param timestamp current time
+     * @return the intersection time interval index
+     */
     public int getIntersectionTemporalIndex(long timestamp){
-        ZonedDateTime dateTime = getTime(timestamp);
-        int day = dateTime.getDayOfWeek().getValue();
-        int hour = dateTime.getHour();
-        int minute = dateTime.getMinute();
-        int second = dateTime.getSecond();
-
-        if(!isValid(dateTime)){
-            // if out of scope, find the most similar day
-            if(dateTime.isBefore(start)){
-                int gap = start.getYear() - dateTime.getYear();
-                dateTime = dateTime.plusYears(gap);
-            }
-            if (dateTime.isAfter(end)) {
-                int gap = dateTime.getYear() - end.getYear();
-                dateTime = dateTime.minusYears(gap);
-            }
-            // to match the day of week
-            int diffDay = day - dateTime.getDayOfWeek().getValue();
-            diffDay = Math.abs(diffDay) < 4 ? diffDay : (diffDay > 0 ? diffDay - 7 : diffDay + 7);
-            ZonedDateTime tmp = dateTime.plusDays(diffDay);
-            if (isValid(tmp)) {
-                // within scope
-                dateTime = tmp;
-            } else {
-                // if out of scope, find the most similar day near to either start or end date
-                int t = dateTime.getDayOfYear();
-                int s = start.getDayOfYear();
-                int e = end.getDayOfYear() - 1;
-
-                int diffS = Math.min(365 + s - t, Math.abs(s - t));
-                int diffE = Math.min(365 + e - t, Math.abs(e - t));
-
-                if (diffS < diffE) {
-                    // near to start
-                    int plusDays = (day + 7 - start.getDayOfWeek().getValue()) % 7;
-                    dateTime = start.plusDays(plusDays).plusHours(hour).plusMinutes(minute).plusSeconds(second);
-                } else {
-                    // near to end
-                    int minusDays = (end.getDayOfWeek().getValue() + 6 - day) % 7;
-                    dateTime = end.minusDays(minusDays + 1).plusHours(hour).plusMinutes(minute).plusSeconds(second);
-                }
-            }
+        int minute = tableMinute(timestamp);
+        if (minute < 0) {
+            return getIntersectionIndex(toScope(getTime(timestamp)));
         }
-        return getIntersectionIndex(dateTime);
+        return intersectionIndices[minute];
     }
 
     /**
@@ -84,7 +59,47 @@ public class TemporalUtils {
      * @return the time interval index
      */
     public int findTimeIntervalIndex(long timestamp){
-        ZonedDateTime dateTime = getTime(timestamp);
+        int minute = tableMinute(timestamp);
+        if (minute < 0) {
+            return getIndex(toScope(getTime(timestamp)));
+        }
+        return intervalIndices[minute];
+    }
+
+    /**
+     * The indices only depend on the minute of a time, so they are looked up in tables with an entry per minute.
+     * The tables start at the minute of the first time looked up, and are filled as later times are looked up.
+     *
+     * @return the position of the minute of a time in the tables; -1 if the time is outside the tables
+     */
+    private int tableMinute(long timestamp){
+        long epochMinute = Math.floorDiv(timestamp / Configuration.timeResolution, 60L);
+        if (filledMinutes == 0) {
+            firstMinute = epochMinute;
+        }
+        long minute = epochMinute - firstMinute;
+        if (minute < 0 || minute >= MAX_TABLE_MINUTES) {
+            return -1;
+        }
+        if (minute >= filledMinutes) {
+            if (minute >= intervalIndices.length) {
+                int capacity = (int) Math.min(MAX_TABLE_MINUTES, Math.max(minute + 1, 2L * intervalIndices.length));
+                intervalIndices = Arrays.copyOf(intervalIndices, capacity);
+                intersectionIndices = Arrays.copyOf(intersectionIndices, capacity);
+            }
+            for (int i = filledMinutes; i <= minute; i++) {
+                long epochSecond = (firstMinute + i) * 60L;
+                ZonedDateTime dateTime = toScope(ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, 0), zone));
+                intervalIndices[i] = getIndex(dateTime);
+                intersectionIndices[i] = getIntersectionIndex(dateTime);
+            }
+            filledMinutes = (int) minute + 1;
+        }
+        return (int) minute;
+    }
+
+    // Map a time outside the time range of the predictions to a similar time within it.
+    private ZonedDateTime toScope(ZonedDateTime dateTime){
         int day = dateTime.getDayOfWeek().getValue();
         int hour = dateTime.getHour();
         int minute = dateTime.getMinute();
@@ -127,7 +142,7 @@ public class TemporalUtils {
                 }
             }
         }
-        return getIndex(dateTime);
+        return dateTime;
     }
 
     private boolean isValid(ZonedDateTime dateTime){
@@ -159,4 +174,42 @@ public class TemporalUtils {
                 * (double) GlobalParameters.numOfIntersectionTimeIntervalPerDay;
         return a + (int) b;
     }
+
+    /**
+     * Compute the temporal weight of every region in every time interval: 1 plus the predicted pickups minus
+     * lambda times the predicted drop-offs over the time horizon from the interval, discounted by 0.8 per
+     * interval; 1 if that is negative.
+     *
+     * @param pickups the predicted pickups of each region in each time interval; null for a region without
+     *                predictions
+     * @param dropOffs the predicted drop-offs of each region in each time interval; null for a region without
+     *                 predictions
+     * @return the weight of each region in each time interval; null for a region without predictions
+     */
+    public static float[][] decayedHorizonWeights(int[][] pickups, int[][] dropOffs){
+        int k = GlobalParameters.timeHorizon / GlobalParameters.timeInterval;
+        double[] discounts = new double[k];
+        for (int i = 0; i < k; i++) {
+            discounts[i] = Math.pow(0.8, i);
+        }
+        float[][] weights = new float[pickups.length][];
+        for (int region = 0; region < pickups.length; region++) {
+            if (pickups[region] == null || dropOffs[region] == null) {
+                continue;
+            }
+            int length = Math.min(pickups[region].length, dropOffs[region].length);
+            weights[region] = new float[length];
+            for (int timeIndex = 0; timeIndex < length; timeIndex++) {
+                double weight = 1.0;
+                for (int i = timeIndex; i < timeIndex + k && i < length; i++) {
+                    weight += discounts[i - timeIndex]
+                            * (pickups[region][i] - GlobalParameters.lambda * dropOffs[region][i]);
+                }
+                if (weight < 0)
+                    weight = 1.0;
+                weights[region][timeIndex] = (float) weight;
+            }
+        }
+        return weights;
+    }
 }
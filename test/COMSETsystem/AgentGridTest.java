@@ -0,0 +1,106 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class AgentGridTest {
+
+    @Test
+    public void testForEachWithin_sameAsLinearScan() {
+        Random random = new Random(3);
+        AgentGrid grid = new AgentGrid(0, 0, 1000, 1000, 70);
+        Map<Integer, double[]> points = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            int id = random.nextInt(300);
+            if (random.nextInt(4) == 0) {
+                assertEquals(points.remove(id) != null, grid.remove(id));
+            } else {
+                // some points fall outside the bounding box
+                double[] xy = {random.nextDouble() * 1200 - 100, random.nextDouble() * 1200 - 100};
+                points.put(id, xy);
+                grid.put(id, xy[0], xy[1]);
+            }
+            assertEquals(points.size(), grid.size());
+
+            double x = random.nextDouble() * 1400 - 200;
+            double y = random.nextDouble() * 1400 - 200;
+            double radius = random.nextDouble() * 300;
+            Set<Integer> expected = new TreeSet<>();
+            for (Map.Entry<Integer, double[]> entry : points.entrySet()) {
+                double dx = entry.getValue()[0] - x;
+                double dy = entry.getValue()[1] - y;
+                if (dx * dx + dy * dy <= radius * radius) {
+                    expected.add(entry.getKey());
+                }
+            }
+            Set<Integer> found = new TreeSet<>();
+            grid.forEachWithin(x, y, radius, foundId -> assertTrue(found.add(foundId)));
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    public void testForEachOutward_shrinkingRadiusFindsNearest() {
+        Random random = new Random(5);
+        AgentGrid grid = new AgentGrid(0, 0, 1000, 1000, 70);
+        Map<Integer, double[]> points = new HashMap<>();
+        for (int id = 0; id < 300; id++) {
+            double[] xy = {random.nextDouble() * 1200 - 100, random.nextDouble() * 1200 - 100};
+            points.put(id, xy);
+            grid.put(id, xy[0], xy[1]);
+        }
+        for (int i = 0; i < 500; i++) {
+            double x = random.nextDouble() * 1400 - 200;
+            double y = random.nextDouble() * 1400 - 200;
+            double radius = random.nextDouble() * 600;
+            double expected = Double.POSITIVE_INFINITY;
+            for (double[] xy : points.values()) {
+                double distance = Math.hypot(xy[0] - x, xy[1] - y);
+                if (distance <= radius) {
+                    expected = Math.min(expected, distance);
+                }
+            }
+            // search with the radius shrunk to the nearest point found so far
+            double[] nearest = {Double.POSITIVE_INFINITY};
+            grid.forEachOutward(x, y, radius, (id, distance) -> {
+                double[] xy = points.get(id);
+                assertEquals(Math.hypot(xy[0] - x, xy[1] - y), distance, 1e-9);
+                nearest[0] = Math.min(nearest[0], distance);
+                return nearest[0];
+            });
+            assertEquals(expected, nearest[0], 1e-9);
+
+            Set<Integer> within = new TreeSet<>();
+            grid.forEachWithin(x, y, radius, within::add);
+            Set<Integer> found = new TreeSet<>();
+            grid.forEachOutward(x, y, radius, (id, distance) -> {
+                assertTrue(found.add(id));
+                return radius;
+            });
+            assertEquals(within, found);
+        }
+    }
+
+    @Test
+    public void testPut_movesPoint() {
+        AgentGrid grid = new AgentGrid(0, 0, 100, 100, 10);
+        grid.put(7, 5, 5);
+        grid.put(7, 95, 95);
+        assertEquals(1, grid.size());
+        assertTrue(grid.contains(7));
+        grid.forEachWithin(5, 5, 10, id -> fail());
+        Set<Integer> found = new TreeSet<>();
+        grid.forEachWithin(90, 90, 10, found::add);
+        assertTrue(found.contains(7));
+        assertTrue(grid.remove(7));
+        assertFalse(grid.remove(7));
+        assertFalse(grid.contains(7));
+    }
+}
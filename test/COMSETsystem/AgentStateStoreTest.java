@@ -0,0 +1,67 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class AgentStateStoreTest {
+
+    @Test
+    public void testSlot_sameAsMap() {
+        Random random = new Random(4);
+        AgentStateStore store = new AgentStateStore();
+        Map<Long, Integer> slots = new HashMap<>();
+        Set<Long> available = new TreeSet<>();
+        for (int i = 0; i < 5000; i++) {
+            // sparse ids, as agent ids are shared with resource events
+            long id = random.nextInt(2000) * 7L;
+            int slot = store.slot(id);
+            Integer expected = slots.putIfAbsent(id, slot);
+            if (expected != null) {
+                assertEquals((int) expected, slot);
+            }
+            assertEquals(id, store.agentId(slot));
+            assertEquals(slot, store.slotOf(id));
+            if (random.nextBoolean()) {
+                available.add(id);
+                store.setAvailable(slot, true);
+            } else {
+                available.remove(id);
+                store.setAvailable(slot, false);
+            }
+        }
+        assertEquals(slots.size(), store.size());
+        assertEquals(-1, store.slotOf(3));
+
+        Set<Long> found = new TreeSet<>();
+        for (int i = 0; i < store.availableCount(); i++) {
+            int slot = store.availableSlot(i);
+            assertTrue(store.isAvailable(slot));
+            assertTrue(found.add(store.agentId(slot)));
+        }
+        assertEquals(available, found);
+    }
+
+    @Test
+    public void testSetLastAppearance() {
+        Road road = mock(Road.class);
+        road.length = 100;
+        AgentStateStore store = new AgentStateStore();
+        int slot = store.slot(42);
+        store.setLastAppearance(slot, 1000, new LocationOnRoad(road, 30));
+        assertEquals(1000, store.lastAppearTime(slot));
+        assertSame(road, store.lastRoad(slot));
+        assertEquals(30, store.lastOffset(slot), 0.0);
+        assertSame(road, store.lastLocation(slot).road);
+        assertEquals(30, store.lastLocation(slot).getDistanceFromStartIntersection(), 0.0);
+        assertNull(store.assignedResource(slot));
+        assertFalse(store.isAvailable(slot));
+    }
+}
@@ -0,0 +1,70 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class AliasTableTest {
+
+    private static int[] histogram(AliasTable table, int samples, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] counts = new int[table.size()];
+        for (int i = 0; i < samples; i++) {
+            counts[table.sample(random)]++;
+        }
+        return counts;
+    }
+
+    @Test
+    public void testSample_proportionalToWeights() {
+        double[] weights = {1.0, 0.0, 3.0, 0.5, 5.5, 0.0};
+        AliasTable table = new AliasTable();
+        table.build(weights, weights.length);
+        assertEquals(weights.length, table.size());
+
+        int samples = 1000000;
+        int[] counts = histogram(table, samples, 7);
+        for (int i = 0; i < weights.length; i++) {
+            double expected = weights[i] / 10.0;
+            assertEquals(expected, (double) counts[i] / samples, 0.003);
+            if (weights[i] == 0.0) {
+                assertEquals(0, counts[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testSample_sameSeedSameSamples() {
+        double[] weights = {2.0, 1.0, 1.0};
+        AliasTable table = new AliasTable();
+        table.build(weights, weights.length);
+        assertArrayEquals(histogram(table, 1000, 3), histogram(table, 1000, 3));
+    }
+
+    @Test
+    public void testBuild_rebuildWithFewerWeights() {
+        AliasTable table = new AliasTable();
+        table.build(new double[] {1.0, 1.0, 1.0, 1.0}, 4);
+        // only the first two weights count
+        table.build(new double[] {0.0, 1.0, 1.0, 1.0}, 2);
+        assertEquals(2, table.size());
+        assertArrayEquals(new int[] {0, 100}, histogram(table, 100, 1));
+    }
+
+    @Test
+    public void testBuild_zeroWeights() {
+        AliasTable table = new AliasTable();
+        table.build(new double[] {0.0, 0.0}, 2);
+        assertEquals(0, table.size());
+        assertEquals(-1, table.sample(new SplittableRandom(1)));
+        table.build(new double[0], 0);
+        assertEquals(-1, table.sample(new SplittableRandom(1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuild_negativeWeight() {
+        new AliasTable().build(new double[] {1.0, -1.0}, 2);
+    }
+}
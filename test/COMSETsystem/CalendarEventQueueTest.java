@@ -0,0 +1,106 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CalendarEventQueueTest {
+
+    private static class TestEvent extends Event {
+        TestEvent(long time) {
+            super(time);
+        }
+
+        @Override
+        Event trigger() {
+            return null;
+        }
+    }
+
+    @Test
+    public void testPoll_sameOrderAsPriorityQueue() {
+        Random random = new Random(2);
+        // 8 buckets of 10 time units; later events wait in the overflow heap
+        CalendarEventQueue queue = new CalendarEventQueue(10, 8);
+        PriorityQueue<Event> expected = new PriorityQueue<>();
+        List<Event> queued = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Event event = new TestEvent(random.nextInt(1000));
+            queue.add(event);
+            expected.add(event);
+            queued.add(event);
+        }
+
+        long now = 0;
+        while (!expected.isEmpty()) {
+            int action = random.nextInt(4);
+            if (action == 0) {
+                // schedule an event in the near or far future
+                Event event = new TestEvent(now + random.nextInt(random.nextBoolean() ? 20 : 500));
+                queue.add(event);
+                expected.add(event);
+                queued.add(event);
+            } else if (action == 1) {
+                Event event = queued.get(random.nextInt(queued.size()));
+                assertEquals(expected.contains(event), queue.contains(event));
+                assertEquals(expected.remove(event), queue.remove(event));
+            } else {
+                Event event = expected.poll();
+                assertSame(event, queue.poll());
+                now = event.getTime();
+            }
+            assertEquals(expected.size(), queue.size());
+        }
+        assertNull(queue.peek());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testAdd_earlierThanRing() {
+        CalendarEventQueue queue = new CalendarEventQueue(10, 4);
+        Event late = new TestEvent(25);
+        queue.add(late);
+        assertSame(late, queue.peek());
+
+        // the ring now starts at the bucket of time 20
+        Event early = new TestEvent(3);
+        queue.add(early);
+        assertTrue(queue.contains(early));
+        assertSame(early, queue.poll());
+        assertSame(late, queue.poll());
+    }
+
+    @Test
+    public void testAdd_intoBucketBeingPolled() {
+        // a single bucket of 100 time units
+        CalendarEventQueue queue = new CalendarEventQueue(100, 1);
+        Event e50 = new TestEvent(50);
+        Event e10 = new TestEvent(10);
+        Event e30 = new TestEvent(30);
+        queue.add(e50);
+        queue.add(e10);
+        queue.add(e30);
+        assertSame(e10, queue.poll());
+
+        // the bucket is now sorted; later additions and removals keep it so
+        Event e20 = new TestEvent(20);
+        Event e90 = new TestEvent(90);
+        Event e40 = new TestEvent(40);
+        queue.add(e90);
+        queue.add(e20);
+        queue.add(e40);
+        assertTrue(queue.remove(e30));
+        assertFalse(queue.contains(e30));
+        assertTrue(queue.contains(e40));
+        assertSame(e20, queue.poll());
+        assertSame(e40, queue.poll());
+        assertSame(e50, queue.poll());
+        assertSame(e90, queue.poll());
+        assertNull(queue.poll());
+    }
+}
@@ -4,6 +4,14 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -68,5 +76,173 @@ public class CityMapTest {
         // 3600 + 300 + (1000-Round(300.05)) = 4600
         assertEquals(4600, (long)(spyMap.travelTimeBetween(origin, destination)));
     }
-}
 
+    @Test
+    public void testCalcTravelTimes_chain() {
+        SimpleMap simpleMap = new SimpleMap();
+        CityMap map = simpleMap.makeCityMap();
+        map.calcTravelTimes();
+
+        // 1000 + 20 + 40 + 90 seconds along the chain
+        assertEquals(1150.0, map.travelTimeBetween(simpleMap.intersection1, simpleMap.intersection5), 1e-9);
+        assertEquals(60.0, map.travelTimeBetween(simpleMap.intersection2, simpleMap.intersection4), 1e-9);
+        assertEquals(0.0, map.travelTimeBetween(simpleMap.intersection3, simpleMap.intersection3), 0.0);
+
+        LinkedList<Intersection> path = map.shortestTravelTimePath(simpleMap.intersection2, simpleMap.intersection5);
+        assertEquals(Arrays.asList(simpleMap.intersection2, simpleMap.intersection3, simpleMap.intersection4,
+                simpleMap.intersection5), path);
+    }
+
+    @Test
+    public void testTravelTimeBetween_departureTime() {
+        SimpleMap simpleMap = new SimpleMap();
+        CityMap map = simpleMap.makeCityMap();
+        map.calcTravelTimes();
+        for (Road road : map.roads()) {
+            road.setSpeed();
+        }
+        // half speed until time 100, then full speed
+        TrafficPattern trafficPattern = new TrafficPattern(100);
+        trafficPattern.addTrafficPatternItem(0, 0.5);
+        trafficPattern.addTrafficPatternItem(100, 1.0);
+
+        LocationOnRoad source = SimpleMap.makeLocationFromRoad(simpleMap.roadFrom2to3, 0.0);
+        LocationOnRoad destination = SimpleMap.makeLocationFromRoad(simpleMap.roadFrom4to5, 0.0);
+        // 20 + 40 seconds at the speed limits
+        assertEquals(60, map.travelTimeBetween(source, destination));
+        // 100 seconds at half speed cover 50 seconds at the speed limits, the remaining 10 take 10 seconds
+        assertEquals(110, map.travelTimeBetween(source, destination, 0, trafficPattern));
+        // 20 seconds at half speed cover 10 seconds at the speed limits, the remaining 50 take 50 seconds
+        assertEquals(70, map.travelTimeBetween(source, destination, 80, trafficPattern));
+        assertEquals(60, map.travelTimeBetween(source, destination, 100, trafficPattern));
+    }
+
+    // A random map of intersections on a grid, with roads between random pairs of intersections, some of
+    // them back to their start intersection and some in parallel with another road.
+    private static CityMap makeRandomCityMap(Random random, int size, int roadCount) {
+        Map<Long, Intersection> intersections = new TreeMap<>();
+        Intersection[] byIndex = new Intersection[size];
+        for (int i = 0; i < size; i++) {
+            Vertex vertex = new Vertex(i % 10, i / 10, (i % 10) * 100, (i / 10) * 100, i);
+            byIndex[i] = new Intersection(vertex);
+            vertex.intersection = byIndex[i];
+            intersections.put(byIndex[i].id, byIndex[i]);
+        }
+        List<Road> roads = new ArrayList<>();
+        for (int i = 0; i < roadCount; i++) {
+            Intersection from = byIndex[random.nextInt(size)];
+            Intersection to = random.nextInt(10) == 0 ? from : byIndex[random.nextInt(size)];
+            Road road = new Road();
+            road.from = from;
+            road.to = to;
+            road.addLink(new Link(from.vertex, to.vertex, 50 + random.nextInt(500), 1 + random.nextInt(20)));
+            from.roadsMapFrom.put(to, road);
+            to.roadsMapTo.put(from, road);
+            roads.add(road);
+        }
+        return new CityMap(intersections, roads, null, null);
+    }
+
+    @Test
+    public void testCalcContractionHierarchy_sameAsAllPairs() {
+        Random random = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            int size = 5 + random.nextInt(30);
+            CityMap map = makeRandomCityMap(random, size, size * (1 + random.nextInt(4)));
+            List<Intersection> intersections = new ArrayList<>(map.intersections().values());
+            map.calcTravelTimes();
+            double[][] expected = new double[size][size];
+            for (Intersection source : intersections) {
+                for (Intersection destination : intersections) {
+                    expected[source.pathTableIndex][destination.pathTableIndex] =
+                            map.travelTimeBetween(source, destination);
+                }
+            }
+
+            map.calcContractionHierarchy();
+            for (Intersection source : intersections) {
+                for (Intersection destination : intersections) {
+                    double travelTime = expected[source.pathTableIndex][destination.pathTableIndex];
+                    assertEquals(travelTime, map.travelTimeBetween(source, destination), 1e-6);
+                    if (travelTime == Double.MAX_VALUE || source == destination) {
+                        continue;
+                    }
+                    // shortcuts are unpacked into roads of the map adding up to the shortest travel time
+                    LinkedList<Intersection> path = map.shortestTravelTimePath(source, destination);
+                    assertSame(source, path.getFirst());
+                    assertSame(destination, path.getLast());
+                    double pathTravelTime = 0;
+                    for (int i = 1; i < path.size(); i++) {
+                        pathTravelTime += path.get(i - 1).roadTo(path.get(i)).travelTime;
+                    }
+                    assertEquals(travelTime, pathTravelTime, 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testContractionHierarchy_selfLoop() {
+        // the road 2 -> 2 goes back to its start intersection
+        ContractionHierarchy hierarchy = new ContractionHierarchy(4,
+                new int[] {2, 1, 2, 3, 3, 2}, new int[] {0, 3, 2, 0, 2, 3}, new double[] {1, 5, 1, 2, 2, 5});
+        assertEquals(7.0, hierarchy.travelTime(1, 0), 0.0);
+        assertEquals(0.0, hierarchy.travelTime(2, 2), 0.0);
+        assertEquals(Double.MAX_VALUE, hierarchy.travelTime(0, 1), 0.0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testMakeReadOnly() {
+        SimpleMap simpleMap = new SimpleMap();
+        CityMap map = simpleMap.makeCityMap();
+        map.makeReadOnly();
+
+        assertSame(simpleMap.roadFrom2to3, simpleMap.intersection2.roadTo(simpleMap.intersection3));
+        assertSame(simpleMap.intersection1, map.intersections().get(simpleMap.intersection1.id));
+        simpleMap.intersection1.roadsMapFrom.remove(simpleMap.intersection2);
+    }
+
+    @Test
+    public void testCalcTravelTimesOnDemand_boundedRowCache() {
+        SimpleMap simpleMap = new SimpleMap();
+        CityMap map = simpleMap.makeCityMap();
+        // room for a single row
+        map.calcTravelTimesOnDemand(LazyPathTable.rowBytes(5));
+        LazyPathTable pathTable = (LazyPathTable) map.pathTable();
+        assertEquals(1, pathTable.capacity());
+
+        assertEquals(1150.0, map.travelTimeBetween(simpleMap.intersection1, simpleMap.intersection5), 1e-9);
+        assertEquals(1020.0, map.travelTimeBetween(simpleMap.intersection1, simpleMap.intersection3), 1e-9);
+        assertEquals(1, pathTable.misses());
+        assertEquals(1, pathTable.hits());
+
+        // evicts the row of intersection1
+        assertEquals(Arrays.asList(simpleMap.intersection2, simpleMap.intersection3),
+                map.shortestTravelTimePath(simpleMap.intersection2, simpleMap.intersection3));
+        assertEquals(2, pathTable.misses());
+        // a path takes a single lookup of its row
+        assertEquals(1, pathTable.hits());
+        assertEquals(1150.0, map.travelTimeBetween(simpleMap.intersection1, simpleMap.intersection5), 1e-9);
+        assertEquals(3, pathTable.misses());
+    }
+
+    @Test
+    public void testAddLink_beginDistance() {
+        Vertex v1 = new Vertex(0, 0, 0, 0, 1);
+        Vertex v2 = new Vertex(0, 0, 100, 0, 2);
+        Vertex v3 = new Vertex(0, 0, 100, 50, 3);
+        Vertex v4 = new Vertex(0, 0, 200, 50, 4);
+        Link link1 = new Link(v1, v2, 100, 10);
+        Link link2 = new Link(v2, v3, 50, 10);
+        Link link3 = new Link(v3, v4, 100, 10);
+        Road road = new Road();
+        road.addLink(link1);
+        road.addLink(link2);
+        road.addLink(link3);
+        assertEquals(0.0, link1.beginDistance, 0.0);
+        assertEquals(100.0, link2.beginDistance, 0.0);
+        assertEquals(150.0, link3.beginDistance, 0.0);
+        // kept by copies
+        assertEquals(150.0, new Link(link3, new Vertex(v3), new Vertex(v4)).beginDistance, 0.0);
+    }
+}
@@ -0,0 +1,68 @@
+package COMSETsystem;
+
+import java.util.Random;
+
+/**
+ * A hold-model benchmark of the event queues: with a fixed number of pending events, every step polls the
+ * first event and schedules a new one 5 to 65 seconds after it, as agents moving from road to road do.
+ * Run it with the numbers of pending events to try, e.g., 5000 50000; it is not run by the test suite.
+ */
+public class EventQueueBenchmark {
+
+    private static final int OPERATIONS = 3000000;
+    private static final int ROUNDS = 5;
+
+    private static class HoldEvent extends Event {
+        HoldEvent(long time) {
+            super(time);
+        }
+
+        @Override
+        Event trigger() {
+            return null;
+        }
+    }
+
+    private interface QueueFactory {
+        EventQueue make();
+    }
+
+    public static void main(String[] args) {
+        int[] pendings = args.length == 0 ? new int[] {5000, 50000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            pendings[i] = Integer.parseInt(args[i]);
+        }
+        long second = Configuration.timeResolution;
+        for (int pending : pendings) {
+            run("heap", pending, IndexedEventQueue::new);
+            run("calendar, 1 s buckets", pending, () -> new CalendarEventQueue(second, 4096));
+            run("calendar, " + Configuration.CALENDAR_BUCKETS_PER_SECOND + " buckets per second", pending,
+                    Configuration::makeCalendarEventQueue);
+        }
+    }
+
+    private static void run(String name, int pending, QueueFactory factory) {
+        long best = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            Random random = new Random(1);
+            EventQueue queue = factory.make();
+            for (int i = 0; i < pending; i++) {
+                queue.add(new HoldEvent(delay(random)));
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++) {
+                Event event = queue.poll();
+                checksum += event.getTime();
+                queue.add(new HoldEvent(event.getTime() + delay(random)));
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%d pending events, %s: %.3f s (checksum %d)%n", pending, name, best / 1e9, checksum);
+    }
+
+    private static long delay(Random random) {
+        long second = Configuration.timeResolution;
+        return 5 * second + (long) (random.nextDouble() * 60 * second);
+    }
+}
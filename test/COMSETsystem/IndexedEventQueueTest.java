@@ -0,0 +1,63 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IndexedEventQueueTest {
+
+    private static class TestEvent extends Event {
+        TestEvent(long time) {
+            super(time);
+        }
+
+        @Override
+        Event trigger() {
+            return null;
+        }
+    }
+
+    @Test
+    public void testPoll_sameOrderAsPriorityQueue() {
+        Random random = new Random(1);
+        IndexedEventQueue queue = new IndexedEventQueue();
+        PriorityQueue<Event> expected = new PriorityQueue<>();
+        for (int i = 0; i < 200; i++) {
+            // few distinct times so that many ties are broken by id
+            Event event = new TestEvent(random.nextInt(10));
+            queue.add(event);
+            expected.add(event);
+        }
+        while (!expected.isEmpty()) {
+            assertSame(expected.poll(), queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testRemove() {
+        IndexedEventQueue queue = new IndexedEventQueue();
+        Event first = new TestEvent(1);
+        Event second = new TestEvent(2);
+        Event third = new TestEvent(3);
+        queue.add(third);
+        queue.add(first);
+        queue.add(second);
+
+        assertTrue(queue.remove(first));
+        assertFalse(queue.contains(first));
+        assertFalse(queue.remove(first));
+        assertTrue(queue.contains(second));
+        assertEquals(2, queue.size());
+
+        // a removed event may be added again
+        queue.add(first);
+        assertSame(first, queue.poll());
+        assertSame(second, queue.poll());
+        assertSame(third, queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+}
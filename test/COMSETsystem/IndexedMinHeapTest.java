@@ -0,0 +1,62 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IndexedMinHeapTest {
+
+    @Test
+    public void testPoll_ordersByKeyThenId() {
+        IndexedMinHeap heap = new IndexedMinHeap(5);
+        heap.insert(3, 2.0);
+        heap.insert(1, 5.0);
+        heap.insert(4, 1.0);
+        heap.insert(0, 2.0);
+
+        assertEquals(4, heap.size());
+        assertEquals(4, heap.poll());
+        assertEquals(0, heap.poll());
+        assertEquals(3, heap.poll());
+        assertEquals(1, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testDecreaseKey() {
+        IndexedMinHeap heap = new IndexedMinHeap(4);
+        heap.insert(0, 10.0);
+        heap.insert(1, 20.0);
+        heap.insert(2, 30.0);
+
+        heap.decreaseKey(2, 5.0);
+        assertEquals(5.0, heap.key(2), 0.0);
+        assertFalse(heap.insertOrDecrease(1, 25.0));
+        assertTrue(heap.insertOrDecrease(3, 1.0));
+
+        assertEquals(3, heap.poll());
+        assertEquals(2, heap.poll());
+        assertFalse(heap.contains(2));
+        assertTrue(heap.contains(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecreaseKey_greaterKey() {
+        IndexedMinHeap heap = new IndexedMinHeap(2);
+        heap.insert(0, 1.0);
+        heap.decreaseKey(0, 2.0);
+    }
+
+    @Test
+    public void testClear_allowsReuse() {
+        IndexedMinHeap heap = new IndexedMinHeap(3);
+        heap.insert(0, 1.0);
+        heap.insert(2, 3.0);
+        heap.clear();
+
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(0));
+        heap.insert(0, 4.0);
+        assertEquals(0, heap.peek());
+    }
+}
@@ -0,0 +1,86 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MinCostAssignmentTest {
+
+    // the number of assigned rows and the total cost of the best assignment of rows from row on
+    private static long[] bruteForce(int row, boolean[] used, int[][] rowColumns, long[][] rowCosts) {
+        if (row == rowColumns.length) {
+            return new long[] {0, 0};
+        }
+        long[] best = bruteForce(row + 1, used, rowColumns, rowCosts);
+        for (int k = 0; k < rowColumns[row].length; k++) {
+            int column = rowColumns[row][k];
+            if (used[column]) {
+                continue;
+            }
+            used[column] = true;
+            long[] rest = bruteForce(row + 1, used, rowColumns, rowCosts);
+            used[column] = false;
+            long assigned = rest[0] + 1;
+            long cost = rest[1] + rowCosts[row][k];
+            if (assigned > best[0] || (assigned == best[0] && cost < best[1])) {
+                best = new long[] {assigned, cost};
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void testSolve_sameAsBruteForce() {
+        Random random = new Random(5);
+        for (int trial = 0; trial < 300; trial++) {
+            int rows = 1 + random.nextInt(6);
+            int columns = 1 + random.nextInt(6);
+            int[][] rowColumns = new int[rows][];
+            long[][] rowCosts = new long[rows][];
+            for (int i = 0; i < rows; i++) {
+                int candidates = random.nextInt(columns + 1);
+                rowColumns[i] = new int[candidates];
+                rowCosts[i] = new long[candidates];
+                for (int k = 0; k < candidates; k++) {
+                    rowColumns[i][k] = random.nextInt(columns);
+                    rowCosts[i][k] = random.nextInt(100);
+                }
+            }
+
+            int[] assignment = MinCostAssignment.solve(columns, rowColumns, rowCosts);
+
+            boolean[] used = new boolean[columns];
+            long assigned = 0;
+            long cost = 0;
+            for (int i = 0; i < rows; i++) {
+                if (assignment[i] < 0) {
+                    continue;
+                }
+                assertFalse(used[assignment[i]]);
+                used[assignment[i]] = true;
+                long best = Long.MAX_VALUE;
+                for (int k = 0; k < rowColumns[i].length; k++) {
+                    if (rowColumns[i][k] == assignment[i]) {
+                        best = Math.min(best, rowCosts[i][k]);
+                    }
+                }
+                assertTrue(best != Long.MAX_VALUE);
+                assigned++;
+                cost += best;
+            }
+            long[] expected = bruteForce(0, new boolean[columns], rowColumns, rowCosts);
+            assertEquals(expected[0], assigned);
+            assertEquals(expected[1], cost);
+        }
+    }
+
+    @Test
+    public void testSolve_prefersMoreAssignedRows() {
+        // row 0 alone would take column 0 at cost 1, but then row 1 could not be assigned
+        int[][] rowColumns = {{0, 1}, {0}};
+        long[][] rowCosts = {{1, 50}, {100}};
+        assertArrayEquals(new int[] {1, 0}, MinCostAssignment.solve(2, rowColumns, rowCosts));
+    }
+}
@@ -0,0 +1,52 @@
+package COMSETsystem;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PathTableCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCalcTravelTimes_storesAndLoadsCache() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        Path input = Files.write(dir.resolve("map.json"), "map".getBytes());
+
+        SimpleMap simpleMap = new SimpleMap();
+        CityMap map = simpleMap.makeCityMap();
+        PathTableCache cache = new PathTableCache(dir.toString(), input.toString());
+        assertNull(cache.load(5));
+        map.calcTravelTimes(cache);
+        assertTrue(Files.isRegularFile(cache.file()));
+
+        PathTable loaded = new PathTableCache(dir.toString(), input.toString()).load(5);
+        assertTrue(loaded instanceof MappedPathTable);
+        CityMap cachedMap = simpleMap.makeCityMap();
+        cachedMap.calcTravelTimes(new PathTableCache(dir.toString(), input.toString()));
+        assertEquals(1150.0, cachedMap.travelTimeBetween(simpleMap.intersection1, simpleMap.intersection5), 1e-9);
+        assertEquals(Arrays.asList(simpleMap.intersection3, simpleMap.intersection4, simpleMap.intersection5),
+                cachedMap.shortestTravelTimePath(simpleMap.intersection3, simpleMap.intersection5));
+        assertEquals(Double.MAX_VALUE, loaded.travelTime(simpleMap.intersection5.pathTableIndex,
+                simpleMap.intersection1.pathTableIndex), 0.0);
+    }
+
+    @Test
+    public void testLoad_staleInputs() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        Path input = Files.write(dir.resolve("map.json"), "map".getBytes());
+
+        new SimpleMap().makeCityMap().calcTravelTimes(new PathTableCache(dir.toString(), input.toString()));
+        Files.write(input, "changed map".getBytes());
+
+        assertNull(new PathTableCache(dir.toString(), input.toString()).load(5));
+    }
+}
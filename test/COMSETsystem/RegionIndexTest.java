@@ -0,0 +1,127 @@
+package COMSETsystem;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.util.GeoCoord;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class RegionIndexTest {
+
+    private static final int RESOLUTION = 8;
+
+    private H3Core h3;
+    private long center;
+    private long neighbour;
+    private long far;
+    private RegionIndex regions;
+    private final Map<Long, Intersection> intersections = new TreeMap<>();
+
+    private void addIntersection(long cell) {
+        GeoCoord coord = h3.h3ToGeo(cell);
+        long id = intersections.size();
+        Intersection intersection = new Intersection(new Vertex(coord.lng, coord.lat, 0, 0, id));
+        intersection.pathTableIndex = (int) id;
+        intersections.put(id, intersection);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        h3 = H3Core.newInstance();
+        center = h3.geoToH3(40.75, -73.99, RESOLUTION);
+        neighbour = h3.kRingDistances(center, 1).get(1).get(0);
+        far = h3.kRingDistances(center, 4).get(4).get(0);
+        addIntersection(center);
+        addIntersection(center);
+        addIntersection(neighbour);
+        addIntersection(far);
+        CityMap map = mock(CityMap.class);
+        when(map.intersections()).thenReturn(intersections);
+        regions = new RegionIndex(h3, RESOLUTION, map);
+    }
+
+    @Test
+    public void testRegionOf() {
+        assertEquals(3, regions.regionCount());
+        for (Intersection intersection : intersections.values()) {
+            long cell = h3.geoToH3(intersection.latitude, intersection.longitude, RESOLUTION);
+            assertEquals(cell, regions.cell(regions.regionOf(intersection)));
+            assertEquals(regions.regionOf(cell), regions.regionOf(intersection));
+        }
+        assertEquals(2, regions.intersections(regions.regionOf(center)).length);
+        assertEquals(-1, regions.regionOf(h3.kRingDistances(center, 2).get(2).get(0)));
+    }
+
+    @Test
+    public void testNeighbours() {
+        int centerRegion = regions.regionOf(center);
+        assertArrayEquals(new int[] {regions.regionOf(neighbour)}, regions.neighbours(centerRegion));
+        assertEquals(5, regions.absentNeighbours(centerRegion).length);
+        for (long cell : regions.absentNeighbours(centerRegion)) {
+            assertEquals(-1, regions.regionOf(cell));
+        }
+
+        int[][] neighbourhood = regions.neighbourhood(center);
+        assertArrayEquals(new int[] {regions.regionOf(neighbour)}, neighbourhood[0]);
+        assertArrayEquals(new int[] {1}, neighbourhood[1]);
+        // cached
+        assertSame(neighbourhood, regions.neighbourhood(center));
+    }
+
+    @Test
+    public void testNeighbourhood_expandsRings() throws Exception {
+        // the far region has no adjacent region; the ring of radius 2 around it has none either, but the ring of
+        // radius 6 has the center and its neighbour
+        int[][] neighbourhood = regions.neighbourhood(far);
+        assertEquals(2, neighbourhood[0].length);
+        for (int i = 0; i < neighbourhood[0].length; i++) {
+            long cell = regions.cell(neighbourhood[0][i]);
+            assertTrue(cell == center || cell == neighbour);
+            assertEquals(h3.h3Distance(far, cell), neighbourhood[1][i]);
+        }
+
+        // a cell that is not a region
+        List<Long> ring = h3.kRingDistances(center, 2).get(2);
+        for (long cell : ring) {
+            if (regions.regionOf(cell) < 0) {
+                neighbourhood = regions.neighbourhood(cell);
+                assertTrue(neighbourhood[0].length > 0);
+                for (int i = 0; i < neighbourhood[0].length; i++) {
+                    assertTrue(regions.cell(neighbourhood[0][i]) != cell);
+                    assertEquals(h3.h3Distance(cell, regions.cell(neighbourhood[0][i])), neighbourhood[1][i]);
+                }
+                assertSame(neighbourhood, regions.neighbourhood(cell));
+            }
+        }
+    }
+
+    @Test
+    public void testRegionSampler_rebuildsForNewBucket() {
+        int[] calls = {0};
+        int centerRegion = regions.regionOf(center);
+        int neighbourRegion = regions.regionOf(neighbour);
+        // in bucket 0 only the center has weight, in bucket 1 only the neighbour
+        RegionSampler sampler = new RegionSampler(regions, (region, bucket) -> {
+            calls[0]++;
+            return (region == centerRegion) == (bucket == 0) ? 1.0 : 0.0;
+        });
+        SplittableRandom random = new SplittableRandom(1);
+        assertEquals(centerRegion, sampler.sample(neighbour, 0, random));
+        assertEquals(centerRegion, sampler.sample(neighbour, 0, random));
+        assertEquals(1, calls[0]);
+        assertEquals(-1, sampler.sample(neighbour, 1, random));
+        assertEquals(2, calls[0]);
+        sampler.invalidate();
+        assertEquals(-1, sampler.sample(neighbour, 1, random));
+        assertEquals(3, calls[0]);
+        assertEquals(neighbourRegion, sampler.sample(center, 1, random));
+    }
+}
@@ -1,5 +1,9 @@
 package COMSETsystem;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * A SimpleMap for Testing
  */
@@ -72,4 +76,17 @@ public class SimpleMap {
         roadFrom3to4.addLink(link3to4);
         roadFrom4to5.addLink(link4to5);
     }
+
+    /**
+     * @return a CityMap made of the intersections and roads of this map
+     */
+    public CityMap makeCityMap() {
+        Map<Long, Intersection> intersections = new TreeMap<>();
+        for (Intersection i : Arrays.asList(intersection1, intersection2, intersection3, intersection4,
+                intersection5)) {
+            intersections.put(i.id, i);
+        }
+        return new CityMap(intersections, Arrays.asList(roadFrom1to2, roadFrom2to3, roadFrom3to4, roadFrom4to5),
+                null, null);
+    }
 }
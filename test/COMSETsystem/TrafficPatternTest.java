@@ -0,0 +1,47 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TrafficPatternTest {
+
+    // 100 epochs of 10 time units starting at time 1000, alternating between full and half speed
+    private static TrafficPattern makeAlternatingPattern() {
+        TrafficPattern pattern = new TrafficPattern(10);
+        for (int i = 0; i < 100; i++) {
+            pattern.addTrafficPatternItem(1000 + 10 * i, i % 2 == 0 ? 1.0 : 0.5);
+        }
+        return pattern;
+    }
+
+    @Test
+    public void testDynamicForwardTravelTime_withinStep() {
+        TrafficPattern pattern = makeAlternatingPattern();
+        // 4 units of time at full speed 2
+        assertEquals(4.0, pattern.dynamicForwardTravelTime(1003, 2.0, 8.0), 0.0);
+        // before the first epoch the first speed factor applies
+        assertEquals(5.0, pattern.dynamicForwardTravelTime(0, 2.0, 10.0), 0.0);
+        // after the last epoch the last speed factor applies
+        assertEquals(10.0, pattern.dynamicForwardTravelTime(5000, 2.0, 10.0), 0.0);
+    }
+
+    @Test
+    public void testDynamicForwardTravelTime_manySteps() {
+        TrafficPattern pattern = makeAlternatingPattern();
+        // every pair of epochs covers 15 units of distance at unit speed; 40 pairs and 5 more units
+        assertEquals(805.0, pattern.dynamicForwardTravelTime(1000, 1.0, 40 * 15 + 5), 1e-9);
+        // 745 units reach the last epoch at time 1990, which lasts forever at half speed
+        assertEquals(990.0 + 2 * 10.0, pattern.dynamicForwardTravelTime(1000, 1.0, 745 + 10), 1e-9);
+    }
+
+    @Test
+    public void testDynamicTravelDistance_inverseOfForwardTravelTime() {
+        TrafficPattern pattern = makeAlternatingPattern();
+        for (double distance = 1.0; distance < 1000.0; distance += 37.0) {
+            double time = pattern.dynamicForwardTravelTime(1004, 1.5, distance);
+            assertEquals(distance, pattern.dynamicTravelDistance(1004, 1.5, time), 1e-9);
+        }
+        assertEquals(40 * 15 + 5, pattern.dynamicTravelDistance(1000, 1.0, 805.0), 1e-9);
+    }
+}
@@ -0,0 +1,140 @@
+package DataParsing;
+
+import MapCreation.MapCreator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CSVNewYorkParserTest {
+
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String HEADER = "VendorID,tpep_pickup_datetime,tpep_dropoff_datetime,passenger_count,"
+            + "trip_distance,pickup_longitude,pickup_latitude,RatecodeID,store_and_fwd_flag,dropoff_longitude,"
+            + "dropoff_latitude,payment_type,fare_amount";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Object savedPolygon;
+
+    @Before
+    public void setUp() throws Exception {
+        // the resources are only kept inside the bounding polygon of the map, here a box around Manhattan
+        List<double[]> polygon = Arrays.asList(new double[] {-75.0, 40.0}, new double[] {-72.0, 40.0},
+                new double[] {-72.0, 42.0}, new double[] {-75.0, 42.0}, new double[] {-75.0, 40.0});
+        Field field = MapCreator.class.getDeclaredField("boundingPolygon");
+        field.setAccessible(true);
+        savedPolygon = field.get(null);
+        field.set(null, polygon);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Field field = MapCreator.class.getDeclaredField("boundingPolygon");
+        field.setAccessible(true);
+        field.set(null, savedPolygon);
+    }
+
+    private static String row(String pickupTime, String dropoffTime, String pickupLon, String pickupLat,
+                              String dropoffLon, String dropoffLat) {
+        return "2," + pickupTime + "," + dropoffTime + ",1,1.50," + pickupLon + "," + pickupLat + ",1,N,"
+                + dropoffLon + "," + dropoffLat + ",1,7.5";
+    }
+
+    private static long epoch(String timestamp) {
+        return ZonedDateTime.of(LocalDateTime.parse(timestamp, FORMAT), NEW_YORK).toEpochSecond();
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = folder.newFile("trips.csv").toPath();
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    @Test
+    public void testParse_sameAsJavaTimeAndParseDouble() throws IOException {
+        String[][] rows = {
+                // an ordinary day
+                {"2016-06-01 08:15:30", "2016-06-01 08:31:02", "-73.98", "40.75", "-73.9", "40.7"},
+                // the spring change: 02:00 to 02:59 do not exist and are moved forward
+                {"2016-03-13 01:59:59", "2016-03-13 03:00:00", "-73.99", "40.76", "-73.95", "40.78"},
+                {"2016-03-13 02:30:00", "2016-03-13 03:10:00", "-73.99", "40.76", "-73.95", "40.78"},
+                {"2016-03-12 23:59:59", "2016-03-14 00:00:00", "-73.99", "40.76", "-73.95", "40.78"},
+                // the fall change: 01:00 to 01:59 happen twice and take the earlier offset
+                {"2016-11-06 00:59:59", "2016-11-06 01:30:00", "-73.97", "40.74", "-73.96", "40.71"},
+                {"2016-11-06 01:59:59", "2016-11-06 02:00:00", "-73.97", "40.74", "-73.96", "40.71"},
+                // long decimals, beyond the digits of a double, and signs
+                {"2016-01-01 00:00:00", "2016-01-01 00:10:00",
+                        "-73.98765432109876543210", "40.750123456789012345678901", "-73.123456789012345", "+40.7"},
+                {"2016-02-29 12:00:00", "2016-02-29 12:05:00", "-73.000000000000001", "40.1", "-74", "41."},
+                {"2016-12-31 23:59:59", "2017-01-01 00:00:01", "-73.9876543210987", "40.0000000000000000000001",
+                        "-73.5e0", "40.5"},
+        };
+        StringBuilder csv = new StringBuilder(HEADER).append("\r\n");
+        for (int i = 0; i < rows.length; i++) {
+            String[] r = rows[i];
+            csv.append(row(r[0], r[1], r[2], r[3], r[4], r[5]));
+            // alternate CRLF and LF line endings, and end the file without one
+            if (i == 3) {
+                csv.append("\n").append("2,2016-06-01 08:15:30,2016-06-01 08:31:02,1\r\n");
+            } else if (i < rows.length - 1) {
+                csv.append(i % 2 == 0 ? "\r\n" : "\n");
+            }
+        }
+
+        List<Resource> resources = new CSVNewYorkParser(write(csv.toString()).toString(), NEW_YORK).parse(1);
+
+        // the short line is skipped
+        assertEquals(rows.length, resources.size());
+        for (int i = 0; i < rows.length; i++) {
+            String[] r = rows[i];
+            Resource resource = resources.get(i);
+            assertEquals(r[0], epoch(r[0]), resource.getTime());
+            assertEquals(r[1], epoch(r[1]), resource.getDropoffTime());
+            assertEquals(r[2], Double.parseDouble(r[2]), resource.getPickupLon(), 0.0);
+            assertEquals(r[3], Double.parseDouble(r[3]), resource.getPickupLat(), 0.0);
+            assertEquals(r[4], Double.parseDouble(r[4]), resource.getDropoffLon(), 0.0);
+            assertEquals(r[5], Double.parseDouble(r[5]), resource.getDropoffLat(), 0.0);
+        }
+    }
+
+    @Test
+    public void testParse_filtersResourcesAndScalesTimes() throws IOException {
+        String csv = HEADER + "\n"
+                + row("2016-06-01 08:15:30", "2016-06-01 08:31:02", "-80.0", "40.75", "-73.9", "40.7") + "\n"
+                + row("2016-06-01 08:15:30", "2016-06-01 08:31:02", "-73.9", "40.7", "-73.9", "40.7") + "\n"
+                + row("2016-06-01 08:15:30", "2016-06-01 08:31:02", "-73.98", "40.75", "-73.9", "40.7") + "\n";
+
+        List<Resource> resources = new CSVNewYorkParser(write(csv).toString(), NEW_YORK).parse(1000);
+
+        // outside the polygon, and with the same pickup and dropoff locations
+        assertEquals(1, resources.size());
+        assertEquals(epoch("2016-06-01 08:15:30") * 1000, resources.get(0).getTime());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testParse_consumerExceptionPropagates() throws IOException {
+        String csv = HEADER + "\n"
+                + row("2016-06-01 08:15:30", "2016-06-01 08:31:02", "-73.98", "40.75", "-73.9", "40.7") + "\n";
+        new CSVNewYorkParser(write(csv).toString(), NEW_YORK).parse(1, resource -> {
+            throw new IllegalStateException();
+        });
+    }
+}
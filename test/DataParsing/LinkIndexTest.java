@@ -0,0 +1,87 @@
+package DataParsing;
+
+import COMSETsystem.Link;
+import COMSETsystem.Vertex;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LinkIndexTest {
+
+    private static Link link(double x1, double y1, double x2, double y2) {
+        Vertex from = new Vertex(0, 0, x1, y1, 0);
+        Vertex to = new Vertex(0, 0, x2, y2, 1);
+        return new Link(from, to, Math.max(1.0, Math.hypot(x2 - x1, y2 - y1)), 10.0);
+    }
+
+    private static Link bruteForceNearest(List<Link> links, double x, double y) {
+        Link nearest = null;
+        double nearestDistSq = Double.POSITIVE_INFINITY;
+        for (Link link : links) {
+            double distSq = Link.segmentDistanceSq(link.from.getX(), link.from.getY(), link.to.getX(),
+                    link.to.getY(), x, y);
+            if (distSq < nearestDistSq || distSq == nearestDistSq && link.id < nearest.id) {
+                nearest = link;
+                nearestDistSq = distSq;
+            }
+        }
+        return nearest;
+    }
+
+    @Test
+    public void testNearest_matchesBruteForce() {
+        Random random = new Random(11);
+        List<Link> links = new ArrayList<>();
+        // a street grid, whose links meet at shared vertices, and scattered short links
+        for (int i = 0; i < 40; i++) {
+            for (int j = 0; j < 40; j++) {
+                links.add(link(i * 100, j * 100, (i + 1) * 100, j * 100));
+                links.add(link(i * 100, j * 100, i * 100, (j + 1) * 100));
+            }
+        }
+        for (int i = 0; i < 2000; i++) {
+            double x = random.nextDouble() * 4000;
+            double y = random.nextDouble() * 4000;
+            links.add(link(x, y, x + random.nextDouble() * 50 - 25, y + random.nextDouble() * 50 - 25));
+        }
+        links.add(link(1234, 1234, 1234, 1234));
+        Collections.shuffle(links, random);
+        LinkIndex index = new LinkIndex(links);
+        assertEquals(links.size(), index.size());
+
+        for (int i = 0; i < 5000; i++) {
+            double x = random.nextDouble() * 4400 - 200;
+            double y = random.nextDouble() * 4400 - 200;
+            assertSame(bruteForceNearest(links, x, y), index.nearest(x, y));
+        }
+        // on vertices shared by several links
+        for (int i = 0; i < 200; i++) {
+            double x = random.nextInt(41) * 100;
+            double y = random.nextInt(41) * 100;
+            assertSame(bruteForceNearest(links, x, y), index.nearest(x, y));
+        }
+    }
+
+    @Test
+    public void testNearest_smallIndices() {
+        assertNull(new LinkIndex(new ArrayList<>()).nearest(0, 0));
+
+        Link only = link(0, 0, 10, 0);
+        List<Link> links = new ArrayList<>();
+        links.add(only);
+        assertSame(only, new LinkIndex(links).nearest(5, 100));
+
+        Link other = link(0, 10, 10, 10);
+        links.add(other);
+        LinkIndex index = new LinkIndex(links);
+        assertSame(only, index.nearest(5, 4));
+        assertSame(other, index.nearest(5, 6));
+        // equally near to both
+        assertSame(only, index.nearest(5, 5));
+    }
+}
@@ -0,0 +1,101 @@
+package DataParsing;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrafficPatternBuilderTest {
+
+    // the windows of the trips collected from scratch for every window, as MapWithData used to
+    private static List<double[]> bruteForceEpochs(long[][] trips, long epoch, long step, boolean dynamicTraffic) {
+        long[][] sorted = trips.clone();
+        Arrays.sort(sorted, Comparator.comparingLong(trip -> trip[0]));
+        List<double[]> epochs = new ArrayList<>();
+        long epochBeginTime = sorted[0][0];
+        int beginIndex = 0;
+        double lastKnownSpeedFactor = 0.3;
+        while (true) {
+            long epochEndTime = epochBeginTime + epoch;
+            int index = beginIndex;
+            int count = 0;
+            long totalActualTravelTime = 0;
+            long totalSimulatedTravelTime = 0;
+            while (index < sorted.length && sorted[index][0] < epochEndTime) {
+                if (sorted[index][1] < epochEndTime) {
+                    count++;
+                    totalActualTravelTime += sorted[index][1] - sorted[index][0];
+                    totalSimulatedTravelTime += sorted[index][2];
+                }
+                index++;
+            }
+            double speedFactor = 1.0;
+            if (dynamicTraffic) {
+                double factor = count == 0 || totalActualTravelTime == 0 ? -1.0
+                        : ((double) totalSimulatedTravelTime) / totalActualTravelTime;
+                if (factor < 0.0) {
+                    speedFactor = lastKnownSpeedFactor;
+                } else {
+                    speedFactor = Math.min(factor, 1.0);
+                    lastKnownSpeedFactor = speedFactor;
+                }
+            }
+            epochs.add(new double[] {epochBeginTime, speedFactor});
+            epochBeginTime += step;
+            while (beginIndex < sorted.length && sorted[beginIndex][0] < epochBeginTime) {
+                beginIndex++;
+            }
+            if (index == sorted.length) {
+                return epochs;
+            }
+        }
+    }
+
+    private static void assertSameEpochs(long[][] trips, long epoch, long step, boolean dynamicTraffic) {
+        TrafficPatternBuilder builder = new TrafficPatternBuilder(epoch, step, dynamicTraffic);
+        for (long[] trip : trips) {
+            builder.addTrip(trip[0], trip[1], trip[2]);
+        }
+        builder.computeEpochs();
+        List<double[]> expected = bruteForceEpochs(trips, epoch, step, dynamicTraffic);
+        assertEquals(expected.size(), builder.epochCount());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals((long) expected.get(i)[0], builder.epochBeginTime(i));
+            assertEquals(expected.get(i)[1], builder.speedFactor(i), 0.0);
+        }
+    }
+
+    @Test
+    public void testComputeEpochs_matchesWindowsFromScratch() {
+        Random random = new Random(5);
+        long[][] trips = new long[5000][];
+        for (int i = 0; i < trips.length; i++) {
+            // a quiet hour in the middle, and some trips recorded with a dropoff before the pickup
+            long pickup = random.nextInt(6 * 3600);
+            if (pickup > 2 * 3600 && pickup < 3 * 3600) {
+                pickup += 3600;
+            }
+            long dropoff = pickup + random.nextInt(3000) - (random.nextInt(50) == 0 ? 3000 : 0);
+            trips[i] = new long[] {pickup, dropoff, random.nextInt(2000)};
+        }
+        assertSameEpochs(trips, 900, 60, true);
+        assertSameEpochs(trips, 900, 60, false);
+        assertSameEpochs(trips, 600, 700, true);
+    }
+
+    @Test
+    public void testComputeEpochs_singleTrip() {
+        assertSameEpochs(new long[][] {{100, 200, 50}}, 900, 60, true);
+        // the trip ends after the only window
+        assertSameEpochs(new long[][] {{100, 2000, 50}}, 900, 60, true);
+
+        TrafficPatternBuilder builder = new TrafficPatternBuilder(900, 60, true);
+        builder.computeEpochs();
+        assertEquals(0, builder.epochCount());
+    }
+}
@@ -0,0 +1,93 @@
+package DataParsing;
+
+import COMSETsystem.LocationOnRoad;
+import COMSETsystem.Road;
+import COMSETsystem.SimpleMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TripDatasetCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Resource trip(Road pickupRoad, double pickupDistance, Road dropoffRoad, double dropoffDistance,
+                                 long time, long dropoffTime) {
+        Resource resource = new Resource(1.0, 2.0, 3.0, 4.0, time, dropoffTime);
+        resource.setPickupLocation(new LocationOnRoad(pickupRoad, pickupDistance));
+        resource.setDropoffLocation(new LocationOnRoad(dropoffRoad, dropoffDistance));
+        return resource;
+    }
+
+    @Test
+    public void testStoreAndLoad_sortedByTime() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        Path dataset = Files.write(dir.resolve("trips.csv"), "trips".getBytes());
+        Path map = Files.write(dir.resolve("map.json"), "map".getBytes());
+        SimpleMap simpleMap = new SimpleMap();
+        List<Road> roads = Arrays.asList(simpleMap.roadFrom1to2, simpleMap.roadFrom2to3, simpleMap.roadFrom3to4,
+                simpleMap.roadFrom4to5);
+
+        List<Resource> resources = new ArrayList<>();
+        resources.add(trip(simpleMap.roadFrom2to3, 100.5, simpleMap.roadFrom4to5, 0.0, 300, 900));
+        resources.add(trip(simpleMap.roadFrom1to2, 0.25, simpleMap.roadFrom3to4, 800.0, 100, 700));
+        resources.add(trip(simpleMap.roadFrom4to5, 1.0, simpleMap.roadFrom1to2, 2.0, 300, 400));
+        long[] staticTripTimes = {30, 10, 20, 0};
+
+        TripDatasetCache cache = new TripDatasetCache(dir.toString(), dataset.toString(), "DENSE", map.toString());
+        assertNull(cache.load(roads));
+        cache.store(resources, staticTripTimes, roads);
+        assertTrue(Files.isRegularFile(cache.file()));
+
+        MappedTrips trips = new TripDatasetCache(dir.toString(), dataset.toString(), "DENSE", map.toString())
+                .load(roads);
+        assertNotNull(trips);
+        assertEquals(3, trips.size());
+        // trips available at the same time keep their order
+        int[] order = {1, 0, 2};
+        for (int i = 0; i < order.length; i++) {
+            Resource resource = resources.get(order[i]);
+            assertEquals(resource.getTime(), trips.time(i));
+            assertEquals(resource.getDropoffTime(), trips.dropoffTime(i));
+            assertEquals(staticTripTimes[order[i]], trips.staticTripTime(i));
+            assertSame(resource.getPickupLocation().road, trips.pickupLocation(i).road);
+            assertEquals(resource.getPickupLocation().getDistanceFromStartIntersection(),
+                    trips.pickupLocation(i).getDistanceFromStartIntersection(), 0.0);
+            assertSame(resource.getDropoffLocation().road, trips.dropoffLocation(i).road);
+            assertEquals(resource.getDropoffLocation().getDistanceFromStartIntersection(),
+                    trips.dropoffLocation(i).getDistanceFromStartIntersection(), 0.0);
+        }
+    }
+
+    @Test
+    public void testLoad_staleInputs() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        Path dataset = Files.write(dir.resolve("trips.csv"), "trips".getBytes());
+        Path map = Files.write(dir.resolve("map.json"), "map".getBytes());
+        SimpleMap simpleMap = new SimpleMap();
+        List<Road> roads = Arrays.asList(simpleMap.roadFrom1to2, simpleMap.roadFrom2to3);
+        List<Resource> resources = new ArrayList<>();
+        resources.add(trip(simpleMap.roadFrom1to2, 1.0, simpleMap.roadFrom2to3, 1.0, 100, 200));
+        new TripDatasetCache(dir.toString(), dataset.toString(), "DENSE", map.toString())
+                .store(resources, new long[] {10}, roads);
+        assertNotNull(new TripDatasetCache(dir.toString(), dataset.toString(), "DENSE", map.toString())
+                .load(roads));
+
+        // other parameters, another map, or a map with another number of roads
+        assertNull(new TripDatasetCache(dir.toString(), dataset.toString(), "LAZY", map.toString()).load(roads));
+        assertNull(new TripDatasetCache(dir.toString(), dataset.toString(), "DENSE", map.toString())
+                .load(roads.subList(0, 1)));
+        Files.write(map, "changed map".getBytes());
+        assertNull(new TripDatasetCache(dir.toString(), dataset.toString(), "DENSE", map.toString()).load(roads));
+    }
+}
@@ -0,0 +1,71 @@
+package UserExamples;
+
+import COMSETsystem.Configuration;
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.*;
+
+public class TemporalUtilsTest {
+
+    private static final ZoneId ZONE = ZoneId.of("America/New_York");
+
+    private static long timestamp(int year, int month, int day, int hour, int minute, int second) {
+        return ZonedDateTime.of(year, month, day, hour, minute, second, 0, ZONE).toEpochSecond()
+                * Configuration.timeResolution;
+    }
+
+    private static void assertSameIndices(long from, long to, long step) {
+        // the first lookup starts the tables, so looking up in increasing order fills and reads the tables,
+        // and looking up in decreasing order computes every index from the date
+        TemporalUtils increasing = new TemporalUtils(ZONE);
+        TemporalUtils decreasing = new TemporalUtils(ZONE);
+        int steps = (int) ((to - from) / step);
+        int[] intervals = new int[steps + 1];
+        int[] intersectionIntervals = new int[steps + 1];
+        for (int i = steps; i >= 0; i--) {
+            intervals[i] = decreasing.findTimeIntervalIndex(from + i * step);
+            intersectionIntervals[i] = decreasing.getIntersectionTemporalIndex(from + i * step);
+        }
+        for (int i = 0; i <= steps; i++) {
+            assertEquals(intervals[i], increasing.findTimeIntervalIndex(from + i * step));
+            assertEquals(intersectionIntervals[i], increasing.getIntersectionTemporalIndex(from + i * step));
+        }
+    }
+
+    @Test
+    public void testIndices_withinPredictionRange() {
+        // three days, across the start of daylight saving time, every 37 seconds
+        assertSameIndices(timestamp(2016, 3, 12, 0, 0, 0), timestamp(2016, 3, 15, 0, 0, 0),
+                37 * Configuration.timeResolution);
+    }
+
+    @Test
+    public void testIndices_outsidePredictionRange() {
+        // a simulation in a later year is mapped back to similar days of the prediction range
+        assertSameIndices(timestamp(2016, 6, 29, 12, 0, 0), timestamp(2016, 7, 2, 12, 0, 0),
+                61 * Configuration.timeResolution);
+        assertSameIndices(timestamp(2017, 12, 30, 0, 0, 0), timestamp(2018, 1, 2, 0, 0, 0),
+                59 * Configuration.timeResolution);
+    }
+
+    @Test
+    public void testDecayedHorizonWeights() {
+        int[][] pickups = {{4, 0, 2, 1, 3, 0}, null, {0, 0}};
+        int[][] dropOffs = {{1, 1, 0, 2, 0, 5}, {1}, {10, 10}};
+        float[][] weights = TemporalUtils.decayedHorizonWeights(pickups, dropOffs);
+        assertNull(weights[1]);
+        int k = GlobalParameters.timeHorizon / GlobalParameters.timeInterval;
+        for (int t = 0; t < 6; t++) {
+            double expected = 1.0;
+            for (int i = t; i < t + k && i < 6; i++) {
+                expected += Math.pow(0.8, i - t) * (pickups[0][i] - GlobalParameters.lambda * dropOffs[0][i]);
+            }
+            assertEquals(expected < 0 ? 1.0 : expected, weights[0][t], 1e-5);
+        }
+        // negative weights are replaced by 1
+        assertArrayEquals(new float[] {1.0f, 1.0f}, weights[2], 0.0f);
+    }
+}